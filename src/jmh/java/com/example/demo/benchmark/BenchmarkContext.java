@@ -0,0 +1,82 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.cache.NameFilter;
+import com.example.demo.search.MemoSearchIndex;
+import com.example.demo.sharding.IdGenerator;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// 벤치마크용 애플리케이션 컨텍스트. local 프로파일(H2 메모리 DB)로 웹 서버 없이 띄우고 데이터를 채운다.
+final class BenchmarkContext {
+    static final int CATEGORY_COUNT = 100;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final String CONTENT = "벤치마크용 메모 본문입니다. The quick brown fox jumps over the lazy dog. ";
+
+    private BenchmarkContext() {
+    }
+
+    // 벤치마크마다 다른 H2 DB 를 쓰도록 database 이름을 받는다. extraArgs 로 설정을 덮어쓸 수 있다.
+    static ConfigurableApplicationContext start(String database, String... extraArgs) {
+        String[] args = Stream.concat(Stream.of(
+                        "--spring.profiles.active=local",
+                        "--spring.main.web-application-type=none",
+                        "--spring.main.banner-mode=off",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.h2.console.enabled=false",
+                        "--logging.level.root=warn"),
+                Arrays.stream(extraArgs)).toArray(String[]::new);
+        return SpringApplication.run(DemoApplication.class, args);
+    }
+
+    // category CATEGORY_COUNT 개와 memo memoCount 개를 JDBC batch 로 넣고, 넣은 memo id 를 이름 순서대로 돌려준다.
+    // memo 이름은 "memo-{번호}" 이고 번호 i 의 id 는 돌려준 목록의 i - 1 번째다.
+    // memo id 는 DB 가 만들지 않으므로 IdGenerator 로 만들어서 id 가 속한 shard 에 넣는다.
+    // category 는 shard 0 에 만들고 다른 shard 에는 같은 id 로 복제한다. (CategoryService 와 같다)
+    static List<Long> seed(ConfigurableApplicationContext context, int memoCount) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        ShardRouter shardRouter = context.getBean(ShardRouter.class);
+        IdGenerator idGenerator = context.getBean(IdGenerator.class);
+
+        List<Object[]> categories = new ArrayList<>(CATEGORY_COUNT);
+        for (int i = 0; i < CATEGORY_COUNT; i++)
+            categories.add(new Object[]{"category-" + i});
+        shardRouter.writeOnShard(0, () -> jdbcTemplate.batchUpdate("insert into category (name) values (?)", categories));
+        List<Object[]> replicas = shardRouter.writeOnShard(0, () -> jdbcTemplate.query("select id, name from category order by id",
+                (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("name")}));
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++)
+            shardRouter.writeOnShard(shard, () -> jdbcTemplate.batchUpdate("insert into category (id, name) values (?, ?)", replicas));
+
+        List<Long> ids = new ArrayList<>(memoCount);
+        Map<Integer, List<Object[]>> memos = new HashMap<>();
+        for (int i = 1; i <= memoCount; i++) {
+            long id = idGenerator.nextId();
+            ids.add(id);
+            List<Object[]> batch = memos.computeIfAbsent(shardRouter.shardOf(id), shard -> new ArrayList<>(INSERT_BATCH_SIZE));
+            batch.add(new Object[]{id, "memo-" + i, CONTENT + i, replicas.get(i % CATEGORY_COUNT)[0]});
+            if (batch.size() == INSERT_BATCH_SIZE)
+                insertMemos(jdbcTemplate, shardRouter, shardRouter.shardOf(id), batch);
+        }
+        memos.forEach((shard, batch) -> insertMemos(jdbcTemplate, shardRouter, shard, batch));
+        context.getBean(MemoSearchIndex.class).rebuild();
+        context.getBean(NameFilter.class).rebuild();
+        return ids;
+    }
+
+    private static void insertMemos(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, int shard, List<Object[]> batch) {
+        if (batch.isEmpty())
+            return;
+        shardRouter.writeOnShard(shard, () ->
+                jdbcTemplate.batchUpdate("insert into memo (id, name, content, category_id) values (?, ?, ?, ?)", batch));
+        batch.clear();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.MemoDTO;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Memo;
+import com.example.demo.service.CategoryService;
+import com.example.demo.service.MemoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// MemoService / CategoryService 를 H2 메모리 DB 위에서 측정한다.
+// ./gradlew jmh 로 실행하고 결과는 build/reports/jmh/results.json 에 저장된다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemoServiceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int memoCount;
+
+    private ConfigurableApplicationContext context;
+    private MemoService memoService;
+    private CategoryService categoryService;
+    private final AtomicLong sequence = new AtomicLong();
+    // seed 로 넣은 memo id. i 번째 id 의 이름은 "memo-{i + 1}" 이다.
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("memo-service-" + memoCount);
+        ids = BenchmarkContext.seed(context, memoCount);
+        memoService = context.getBean(MemoService.class);
+        categoryService = context.getBean(CategoryService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(ids.size());
+    }
+
+    @Benchmark
+    public Memo createMemo() {
+        MemoDTO memoDTO = new MemoDTO();
+        memoDTO.setName("bench-created-" + sequence.incrementAndGet());
+        memoDTO.setContent("created by benchmark");
+        memoDTO.setCategory_id(1L);
+        return memoService.createMemo(memoDTO);
+    }
+
+    @Benchmark
+    public Memo getMemo() {
+        return memoService.getMemo(ids.get(randomIndex()));
+    }
+
+    @Benchmark
+    public Page<Memo> getMemos() {
+        return memoService.getMemos(PageRequest.of(0, 20), null);
+    }
+
+    @Benchmark
+    public Page<Memo> getMemosWithKeyword() {
+        return memoService.getMemos(PageRequest.of(0, 20), "memo-" + (randomIndex() + 1));
+    }
+
+    @Benchmark
+    public Memo modifyMemo() {
+        int index = randomIndex();
+        MemoDTO memoDTO = new MemoDTO();
+        memoDTO.setId(ids.get(index));
+        memoDTO.setName("memo-" + (index + 1));
+        memoDTO.setContent("modified by benchmark " + sequence.incrementAndGet());
+        return memoService.modifyMemo(memoDTO);
+    }
+
+    @Benchmark
+    public Category createCategory() {
+        CategoryDTO categoryDTO = new CategoryDTO();
+        categoryDTO.setName("bench-category-" + sequence.incrementAndGet());
+        return categoryService.createCategory(categoryDTO);
+    }
+
+    @Benchmark
+    public Page<Category> getCategories() {
+        return categoryService.getCategories(PageRequest.of(0, 20), null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.PageResponse;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Memo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// GET /memos 응답의 직렬화 비용. DB 없이 메모 pageSize 개짜리 페이지를 만들어서 측정한다.
+// - pageToJson: 예전 응답 (Page<Memo> 를 그대로 JSON)
+// - pageResponseToJson / pageResponseToCbor: PageResponse 를 JSON / CBOR 로
+// 응답 크기(바이트, gzip 포함)는 측정 전에 한 번 계산해서 출력한다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageSerializationBenchmark {
+    @Param({"20", "100"})
+    public int pageSize;
+
+    @Param({"100", "10000"})
+    public int contentLength;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private Page<Memo> page;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        Category category = new Category(1L, "category-1");
+        String content = "a".repeat(contentLength);
+        List<Memo> memos = new ArrayList<>(pageSize);
+        for (long i = 1; i <= pageSize; i++)
+            memos.add(new Memo(i, "memo-" + i, content, category));
+        page = new PageImpl<>(memos, PageRequest.of(0, pageSize), 1_000_000);
+
+        System.out.printf("%n[bytes per page] pageSize=%d contentLength=%d%n", pageSize, contentLength);
+        printSize("Page<Memo> json", pageToJson());
+        printSize("PageResponse json", pageResponseToJson());
+        printSize("PageResponse cbor", pageResponseToCbor());
+    }
+
+    private static void printSize(String name, byte[] body) {
+        System.out.printf("  %-18s %8d bytes, gzip %8d bytes%n", name, body.length, gzip(body).length);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] pageToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] pageResponseToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(PageResponse.of(page));
+    }
+
+    @Benchmark
+    public byte[] pageResponseToCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(PageResponse.of(page));
+    }
+}
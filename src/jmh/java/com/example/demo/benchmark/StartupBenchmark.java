@@ -0,0 +1,115 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 서버 시작 시간을 측정한다. 같은 JVM 에서 여러 번 띄우면 클래스 로딩/JIT 이 재사용되므로
+// 매번 새 JVM 프로세스로 DemoApplication 을 띄우고, 프로세스 시작부터
+//  - timeToReady: "Started DemoApplication" 로그가 나올 때까지
+//  - timeToFirstRequest: GET /memos/summary 가 처음 200 으로 응답할 때까지
+// 를 잰다. variant 로 기본 설정(local), 빠른 시작 프로파일(local,fast), 빠른 시작 프로파일에 AOT 를 켠 것
+// (fast-aot: -Dspring.aot.enabled=true, processAot 가 만든 빈 정의 클래스를 jmh classpath 에 넣는다)을 비교한다.
+// 실행: ./gradlew jmh -PjmhIncludes=StartupBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+public class StartupBenchmark {
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    @Param({"local", "fast", "fast-aot"})
+    public String variant;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private Process process;
+    private int port;
+
+    @Setup(Level.Invocation)
+    public void choosePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process == null)
+            return;
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS))
+            process.destroyForcibly().waitFor();
+        process = null;
+    }
+
+    @Benchmark
+    public void timeToReady() throws IOException {
+        process = launch(ProcessBuilder.Redirect.PIPE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("Started DemoApplication"))
+                    return;
+            }
+        }
+        throw new IllegalStateException("application exited before it started");
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException, InterruptedException {
+        process = launch(ProcessBuilder.Redirect.DISCARD);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/memos/summary")).build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive())
+                throw new IllegalStateException("application exited before the first request");
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200)
+                    return response.statusCode();
+            } catch (ConnectException e) {
+                // 아직 포트를 열지 않았다.
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("no response within " + TIMEOUT);
+    }
+
+    // 벤치마크 JVM 과 같은 classpath 로 새 JVM 을 띄운다. H2 메모리 DB 라서 매번 빈 DB 에서 시작한다.
+    private Process launch(ProcessBuilder.Redirect output) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Xmx512m");
+        if (variant.endsWith("-aot"))
+            command.add("-Dspring.aot.enabled=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DemoApplication.class.getName());
+        command.add("--spring.profiles.active=" + (variant.equals("local") ? "local" : "local,fast"));
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=jdbc:h2:mem:startup");
+        command.add("--spring.h2.console.enabled=false");
+        command.add("--spring.main.banner-mode=off");
+        command.add("--logging.level.root=warn");
+        command.add("--logging.level.com.example.demo.DemoApplication=info");
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output)
+                .start();
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 느린 DB 앞에서 동시 요청이 많을 때의 처리량을 플랫폼 스레드(local)와 가상 스레드(local,virtual)로 비교한다.
+// H2 를 TCP 서버로 띄우고 그 앞에 클라이언트 -> DB 방향 데이터마다 DB_DELAY_MS 만큼 늦게 보내는 proxy 를 두어
+// 쿼리마다 네트워크 왕복이 느린 DB 처럼 만든다. 애플리케이션은 StartupBenchmark 처럼 새 JVM 으로 띄우고,
+// 한 번 호출할 때마다 GET /memos/{id} 를 CONCURRENCY 개 동시에 보내서 모두 응답받을 때까지를 잰다. (결과는 요청/초)
+// 두 경우 모두 커넥션 풀은 POOL_SIZE 로 같고, 플랫폼 스레드는 Tomcat 스레드 수(기본 200)가 동시 처리 수를 막는다.
+// 실행: ./gradlew jmh -PjmhIncludes=VirtualThreadBenchmark (Java 21 이상)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VirtualThreadBenchmark {
+    private static final int CONCURRENCY = 1000;
+    private static final int POOL_SIZE = 400;
+    private static final long DB_DELAY_MS = 5;
+    private static final int SEED_MEMOS = 200;
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    @Param({"local", "local,virtual"})
+    public String profiles;
+
+    private final ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(clients)
+            .build();
+    private final List<Long> ids = new ArrayList<>();
+    private Server database;
+    private SlowProxy proxy;
+    private Process process;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, SQLException, InterruptedException {
+        database = Server.createTcpServer("-tcpPort", String.valueOf(freePort()), "-ifNotExists").start();
+        proxy = new SlowProxy(database.getPort(), DB_DELAY_MS);
+        port = freePort();
+        process = launch();
+        waitUntilReady();
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException, IOException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS))
+                process.destroyForcibly().waitFor();
+        }
+        if (proxy != null)
+            proxy.close();
+        if (database != null)
+            database.stop();
+        clients.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public int getMemos() throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/memos/" + id)).build();
+            responses.add(clients.submit(() -> httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()));
+        }
+        int ok = 0;
+        for (Future<Integer> response : responses) {
+            int status = response.get();
+            if (status != 200)
+                throw new IllegalStateException("GET /memos/{id} returned " + status);
+            ok++;
+        }
+        return ok;
+    }
+
+    // 메모는 API 로 만든다. (content 는 압축해서 저장하므로 SQL 로 직접 넣지 않는다)
+    private void seed() throws IOException, InterruptedException {
+        for (int i = 0; i < SEED_MEMOS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/memos"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"name\":\"memo-" + i + "\",\"content\":\"" + "content ".repeat(20) + i + "\"}"))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = ID.matcher(response.body());
+            if (response.statusCode() != 200 || !matcher.find())
+                throw new IllegalStateException("seeding failed: " + response.statusCode() + " " + response.body());
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+    }
+
+    private void waitUntilReady() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/memos/summary")).build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive())
+                throw new IllegalStateException("application exited before it started");
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+                    return;
+            } catch (ConnectException e) {
+                // 아직 포트를 열지 않았다.
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("no response within " + TIMEOUT);
+    }
+
+    // 풀이 모자라 기다리는 요청이 503 으로 끝나지 않도록 connection-timeout 은 길게 두고,
+    // 동시 처리 수를 줄이는 admission control 은 끈다.
+    private Process launch() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Xmx1g");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DemoApplication.class.getName());
+        command.add("--spring.profiles.active=" + profiles);
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=jdbc:h2:tcp://localhost:" + proxy.getPort() + "/mem:virtual;DB_CLOSE_DELAY=-1");
+        command.add("--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE);
+        command.add("--spring.datasource.hikari.connection-timeout=60000");
+        command.add("--app.admission.enabled=false");
+        command.add("--spring.h2.console.enabled=false");
+        command.add("--spring.main.banner-mode=off");
+        command.add("--logging.level.root=warn");
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // localhost 의 TCP 연결을 그대로 전달하되, 클라이언트가 보낸 데이터는 delayMs 만큼 늦게 DB 로 보낸다.
+    static final class SlowProxy implements Closeable {
+        private final ServerSocket serverSocket;
+        private final ExecutorService pumps = Executors.newVirtualThreadPerTaskExecutor();
+
+        SlowProxy(int targetPort, long delayMs) throws IOException {
+            this.serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket client = serverSocket.accept();
+                        Socket target = new Socket("localhost", targetPort);
+                        client.setTcpNoDelay(true);
+                        target.setTcpNoDelay(true);
+                        pumps.submit(() -> pump(client, target, delayMs));
+                        pumps.submit(() -> pump(target, client, 0));
+                    } catch (IOException e) {
+                        // 닫혔다.
+                    }
+                }
+            }, "slow-db-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private static void pump(Socket from, Socket to, long delayMs) {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (delayMs > 0)
+                        Thread.sleep(delayMs);
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // 한쪽이 연결을 끊었다.
+            } finally {
+                closeQuietly(from);
+                closeQuietly(to);
+            }
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 무시
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            pumps.shutdownNow();
+        }
+    }
+}
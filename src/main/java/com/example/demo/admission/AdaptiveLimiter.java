@@ -0,0 +1,168 @@
+package com.example.demo.admission;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 응답 시간을 보고 동시 실행 한도를 조절하는 AIMD limiter.
+// 응답 하나하나로 판단하지 않고, WINDOW(100ms) 이상 지나고 MIN_SAMPLES 개 이상 모인 창(window) 단위로 판단한다.
+// 창의 중앙값(p50)이 baseline * tolerance 를 넘거나 5xx 가 10% 를 넘으면 한도를 backoff 배로 줄이고,
+// 아니면서 창 안에서 한도의 절반 이상을 썼으면 한도를 1 늘린다. 줄이는 것은 창마다 한 번까지다.
+// baseline 은 창마다의 p50 을 천천히 따라가는 이동 평균이라서, 캐시 적중처럼 아주 빠른 응답 몇 개나
+// 느린 응답 몇 개에 끌려가지 않는다.
+//
+// 요청 종류(AdmissionClass)별 limiter 는 여러 Controller 메서드의 응답 시간이 섞이므로 응답 시간을 직접 보지 않고,
+// Controller 메서드별 limiter 가 창마다 내린 판정(Signal)만 받아서 조절한다. (adjust)
+public class AdaptiveLimiter {
+    private static final double BACKOFF = 0.9;
+    private static final double BASELINE_ALPHA = 0.1;
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int MIN_SAMPLES = 20;
+    // 창마다 중앙값을 구할 때 쓰는 표본 수. 넘으면 무작위로 바꿔 넣는다. (reservoir sampling)
+    private static final int MAX_SAMPLES = 256;
+
+    // 창이 끝났을 때의 판정. NONE 은 아직 창이 끝나지 않았다는 뜻이다.
+    public enum Signal {
+        NONE, HEALTHY, OVERLOADED
+    }
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 창 안에서 가장 많이 동시에 실행된 수. 한도를 다 쓰지 않는 동안에는 한도를 늘리지 않는다.
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double baselineNanos;
+
+    // 현재 창
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int sampleCount;
+    private int errorCount;
+    private long windowStartNanos = System.nanoTime();
+    private long lastDecreaseNanos;
+    private long lastIncreaseNanos;
+
+    public AdaptiveLimiter(String name, AdmissionProperties.Limits limits, double tolerance) {
+        this.name = name;
+        this.minLimit = Math.max(1, limits.getMin());
+        this.maxLimit = Math.max(minLimit, limits.getMax());
+        this.limit = Math.min(maxLimit, Math.max(minLimit, limits.getInitial()));
+        this.tolerance = tolerance;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // 한도 안이면 자리를 잡고 true, 꽉 찼으면 false
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit)
+                return false;
+            if (inFlight.compareAndSet(current, current + 1)) {
+                peakInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    // 자리만 돌려준다. (응답 시간을 한도 조절에 쓰지 않을 때)
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    // 자리를 돌려주고 응답 시간을 현재 창에 넣는다. 창이 끝나면 한도를 조절하고 그 판정을 돌려준다.
+    public Signal release(long nanos, boolean success) {
+        inFlight.decrementAndGet();
+        lock.lock();
+        try {
+            if (!success) {
+                errorCount++;
+            } else if (sampleCount < MAX_SAMPLES) {
+                samples[sampleCount++] = nanos;
+            } else {
+                // 표본이 꽉 차면 지금까지 들어온 수에 비례한 확률로 바꿔 넣는다.
+                int index = ThreadLocalRandom.current().nextInt(sampleCount + 1);
+                if (index < MAX_SAMPLES)
+                    samples[index] = nanos;
+                sampleCount++;
+            }
+            long now = System.nanoTime();
+            if (now - windowStartNanos < WINDOW_NANOS || sampleCount + errorCount < MIN_SAMPLES)
+                return Signal.NONE;
+            return closeWindow(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 다른 limiter 의 창 판정으로 한도를 조절한다. 늘리고 줄이는 것은 각각 WINDOW 에 한 번까지다.
+    public void adjust(Signal signal) {
+        if (signal == Signal.NONE)
+            return;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (signal == Signal.OVERLOADED) {
+                if (now - lastDecreaseNanos >= WINDOW_NANOS)
+                    decrease(now);
+            } else if (now - lastIncreaseNanos >= WINDOW_NANOS && now - lastDecreaseNanos >= WINDOW_NANOS) {
+                increaseIfUsed(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Signal closeWindow(long now) {
+        int measured = Math.min(sampleCount, MAX_SAMPLES);
+        long median = 0;
+        if (measured > 0) {
+            long[] sorted = Arrays.copyOf(samples, measured);
+            Arrays.sort(sorted);
+            median = sorted[measured / 2];
+        }
+        int total = sampleCount + errorCount;
+        boolean overloaded = errorCount * 10 > total
+                || (baselineNanos > 0 && measured > 0 && median > baselineNanos * tolerance);
+        if (overloaded)
+            decrease(now);
+        else
+            increaseIfUsed(now);
+        if (measured > 0)
+            baselineNanos = baselineNanos == 0 ? median : baselineNanos + BASELINE_ALPHA * (median - baselineNanos);
+
+        sampleCount = 0;
+        errorCount = 0;
+        windowStartNanos = now;
+        return overloaded ? Signal.OVERLOADED : Signal.HEALTHY;
+    }
+
+    private void decrease(long now) {
+        limit = Math.max(minLimit, limit * BACKOFF);
+        lastDecreaseNanos = now;
+        peakInFlight.set(inFlight.get());
+    }
+
+    private void increaseIfUsed(long now) {
+        if (peakInFlight.get() >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1);
+            lastIncreaseNanos = now;
+        }
+        peakInFlight.set(inFlight.get());
+    }
+}
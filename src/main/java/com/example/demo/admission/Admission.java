@@ -0,0 +1,13 @@
+package com.example.demo.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Controller 메서드의 AdmissionClass 를 정한다. 없으면 GET 은 READ, 나머지는 WRITE 다.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Admission {
+    AdmissionClass value();
+}
@@ -0,0 +1,6 @@
+package com.example.demo.admission;
+
+// 요청 종류별 동시 실행 한도(budget). 종류마다 따로 세기 때문에 export / 대량 등록이 몰려도 단건 조회는 자리가 남는다.
+public enum AdmissionClass {
+    READ, WRITE, BULK
+}
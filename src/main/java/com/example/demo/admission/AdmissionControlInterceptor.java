@@ -0,0 +1,115 @@
+package com.example.demo.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 요청이 몰릴 때 모든 요청이 Tomcat 스레드와 DB 커넥션을 기다리며 같이 느려지는 대신,
+// 한도를 넘는 요청은 바로 503 + Retry-After 로 거절한다.
+// AdmissionClass(READ / WRITE / BULK)별 한도와 Controller 메서드별 한도를 둘 다 통과해야 실행되고,
+// 메서드별 한도는 그 메서드의 응답 시간으로 AdaptiveLimiter 가 조절하고, 종류별 한도는 메서드별 limiter 의 판정으로 조절한다.
+@Component
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+    public static final String LIMIT = "admission.limit";
+    public static final String IN_FLIGHT = "admission.inflight";
+    public static final String REJECTED = "admission.rejected";
+    private static final String PERMIT = AdmissionControlInterceptor.class.getName() + ".permit";
+
+    private final AdmissionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<AdmissionClass, AdaptiveLimiter> classLimiters = new EnumMap<>(AdmissionClass.class);
+    private final Map<String, AdaptiveLimiter> endpointLimiters = new ConcurrentHashMap<>();
+
+    private record Permit(AdaptiveLimiter classLimiter, AdaptiveLimiter endpointLimiter, long start) {
+    }
+
+    public AdmissionControlInterceptor(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        for (AdmissionClass admissionClass : AdmissionClass.values())
+            classLimiters.put(admissionClass, register(admissionClass.name().toLowerCase(), admissionClass));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // async 요청이 다시 dispatch 될 때는 처음 요청에서 이미 확인했다.
+        if (!properties.isEnabled() || !(handler instanceof HandlerMethod handlerMethod)
+                || request.getDispatcherType() != DispatcherType.REQUEST)
+            return true;
+
+        AdmissionClass admissionClass = classify(request, handlerMethod);
+        String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        AdaptiveLimiter classLimiter = classLimiters.get(admissionClass);
+        AdaptiveLimiter endpointLimiter = endpointLimiters.computeIfAbsent(endpoint, name -> register(name, admissionClass));
+
+        if (!classLimiter.tryAcquire())
+            return reject(response, classLimiter);
+        if (!endpointLimiter.tryAcquire()) {
+            classLimiter.release();
+            return reject(response, endpointLimiter);
+        }
+        request.setAttribute(PERMIT, new Permit(classLimiter, endpointLimiter, System.nanoTime()));
+        return true;
+    }
+
+    // SSE 처럼 응답을 오래 여는 async 요청은 응답 시간을 한도 조절에 쓰지 않고 자리를 바로 돌려준다.
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit == null)
+            return;
+        request.removeAttribute(PERMIT);
+        permit.endpointLimiter().release();
+        permit.classLimiter().release();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit == null)
+            return;
+        request.removeAttribute(PERMIT);
+        long nanos = System.nanoTime() - permit.start();
+        boolean success = ex == null && response.getStatus() < 500;
+        AdaptiveLimiter.Signal signal = permit.endpointLimiter().release(nanos, success);
+        permit.classLimiter().release();
+        permit.classLimiter().adjust(signal);
+    }
+
+    private static AdmissionClass classify(HttpServletRequest request, HandlerMethod handlerMethod) {
+        Admission admission = handlerMethod.getMethodAnnotation(Admission.class);
+        if (admission != null)
+            return admission.value();
+        return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())
+                ? AdmissionClass.READ
+                : AdmissionClass.WRITE;
+    }
+
+    private boolean reject(HttpServletResponse response, AdaptiveLimiter limiter) throws IOException {
+        Counter.builder(REJECTED).tag("limiter", limiter.getName()).register(meterRegistry).increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()));
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "요청이 많아 처리할 수 없습니다. 잠시 후 다시 시도해 주세요.");
+        return false;
+    }
+
+    private AdaptiveLimiter register(String name, AdmissionClass admissionClass) {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(name, properties.limitsFor(admissionClass), properties.getLatencyTolerance());
+        Gauge.builder(LIMIT, limiter, AdaptiveLimiter::getLimit).tag("limiter", name).register(meterRegistry);
+        Gauge.builder(IN_FLIGHT, limiter, AdaptiveLimiter::getInFlight).tag("limiter", name).register(meterRegistry);
+        return limiter;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// app.admission.limits.read.initial=20 처럼 AdmissionClass 마다 동시 실행 한도를 정한다.
+@Data
+@ConfigurationProperties("app.admission")
+public class AdmissionProperties {
+    boolean enabled = true;
+    // 503 응답의 Retry-After (초)
+    int retryAfterSeconds = 1;
+    // 100ms 창의 응답 시간 중앙값이 평소(baseline)의 이 배수를 넘으면 한도를 줄인다.
+    double latencyTolerance = 2.0;
+    Map<AdmissionClass, Limits> limits = new EnumMap<>(AdmissionClass.class);
+
+    @Data
+    public static class Limits {
+        int initial = 20;
+        int min = 1;
+        int max = 200;
+    }
+
+    public Limits limitsFor(AdmissionClass admissionClass) {
+        return limits.getOrDefault(admissionClass, new Limits());
+    }
+}
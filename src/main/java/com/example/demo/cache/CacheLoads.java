@@ -0,0 +1,44 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Caffeine 의 Cache.get(key, loader) 는 ConcurrentHashMap.compute 의 synchronized 안에서 loader 를 실행한다.
+// loader 가 DB 조회처럼 기다리는 작업이면 가상 스레드가 그동안 carrier 스레드에 고정(pinned)된다.
+// 그래서 AsyncCache 에 아직 끝나지 않은 future 만 넣고, 넣은 스레드가 lock 밖에서 값을 만들어 future 를 완료한다.
+// 같은 key 를 동시에 요청한 스레드는 그 future 를 기다리므로 값은 지금처럼 한 번만 만든다.
+// 값은 요청한 스레드에서 만들기 때문에 트랜잭션이나 shard 같은 ThreadLocal 도 그대로 쓸 수 있다.
+final class CacheLoads {
+    private CacheLoads() {
+    }
+
+    // loader 가 null 을 돌려주면 캐시에 남기지 않는다.
+    static <K, V> V get(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        boolean[] loading = new boolean[1];
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> {
+            loading[0] = true;
+            return created;
+        });
+        if (loading[0]) {
+            try {
+                created.complete(loader.apply(key));
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Category;
+import com.example.demo.repository.CategoryRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+// Category 는 작고 거의 바뀌지 않는데 계속 읽히기 때문에 메모리에 캐시한다.
+// id -> Category, name -> id 두 개의 캐시를 두고, 크기가 넘치면 Caffeine 의 W-TinyLFU 정책으로 덜 쓰이는 것부터 버린다.
+// 수정/삭제 시에는 evict 를 호출해서 오래된 데이터가 나가지 않게 한다.
+@Component
+public class CategoryCache {
+    private final CategoryRepository categoryRepository;
+    // 없는 id 를 DB 에서 읽는 동안 가상 스레드가 고정되지 않도록 AsyncCache 로 둔다. (CacheLoads)
+    private final AsyncCache<Long, Category> byId;
+    private final Cache<String, Long> idByName;
+
+    public CategoryCache(CategoryRepository categoryRepository,
+                         @Value("${app.category-cache.maximum-size:10000}") long maximumSize) {
+        this.categoryRepository = categoryRepository;
+        this.byId = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().buildAsync();
+        this.idByName = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    // 캐시에 없으면 DB 에서 읽어온다. 같은 id 를 동시에 읽어도 DB 조회는 한 번만 한다.
+    public Optional<Category> findById(Long id) {
+        return Optional.ofNullable(CacheLoads.get(byId, id, key -> categoryRepository.findById(key).orElse(null)));
+    }
+
+    public Optional<Category> findByName(String name) {
+        Long id = idByName.getIfPresent(name);
+        if (id != null) {
+            Optional<Category> category = findById(id);
+            if (category.isPresent() && name.equals(category.get().getName()))
+                return category;
+            idByName.invalidate(name);
+        }
+        Optional<Category> category = categoryRepository.findByName(name);
+        category.ifPresent(this::put);
+        return category;
+    }
+
+    public void put(Category category) {
+        byId.synchronous().put(category.getId(), category);
+        idByName.put(category.getName(), category.getId());
+    }
+
+    // 트랜잭션 안에서 호출하면 커밋 후에 한 번 더 지운다.
+    // 커밋 전에 다른 요청이 예전 값을 다시 캐시에 올려놓는 경우를 막기 위해서다.
+    public void evict(Long id) {
+        evictNow(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(id);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Long id) {
+        Category category = byId.synchronous().asMap().remove(id);
+        if (category != null)
+            idByName.invalidate(category.getName());
+    }
+
+    public CacheStats idStats() {
+        return byId.synchronous().stats();
+    }
+
+    public CacheStats nameStats() {
+        return idByName.stats();
+    }
+}
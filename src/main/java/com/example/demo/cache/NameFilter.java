@@ -0,0 +1,83 @@
+package com.example.demo.cache;
+
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// 메모/카테고리 이름 중복 확인 전에 보는 Bloom filter.
+// 대부분의 새 이름은 filter 에 없으므로 DB 에 존재 여부를 묻지 않고 바로 저장한다.
+// filter 가 틀릴 수 있는 경우(있다고 나오는 경우)에만 DB 를 확인하고, 최종 중복 방지는 name 컬럼의 unique 제약이 한다.
+// 삭제된 이름은 filter 에서 지울 수 없지만 DB 조회가 한 번 더 나갈 뿐 결과는 틀리지 않는다.
+@Component
+public class NameFilter {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    private final MemoRepository memoRepository;
+    private final CategoryRepository categoryRepository;
+    private final ShardRouter shardRouter;
+    private final long expectedNames;
+
+    private volatile BloomFilter memoNames;
+    private volatile BloomFilter categoryNames;
+
+    public NameFilter(MemoRepository memoRepository, CategoryRepository categoryRepository, ShardRouter shardRouter,
+                      @Value("${app.name-filter.expected-names:1000000}") long expectedNames) {
+        this.memoRepository = memoRepository;
+        this.categoryRepository = categoryRepository;
+        this.shardRouter = shardRouter;
+        this.expectedNames = expectedNames;
+        this.memoNames = new BloomFilter(expectedNames, FALSE_POSITIVE_RATE);
+        this.categoryNames = new BloomFilter(expectedNames, FALSE_POSITIVE_RATE);
+    }
+
+    // 이름이 null 이면 DB 조회로 넘어가도록 true 를 준다.
+    public boolean mightContainMemo(String name) {
+        return name == null || memoNames.mightContain(name);
+    }
+
+    public void addMemo(String name) {
+        if (name != null)
+            memoNames.add(name);
+    }
+
+    public boolean mightContainCategory(String name) {
+        return name == null || categoryNames.mightContain(name);
+    }
+
+    public void addCategory(String name) {
+        if (name != null)
+            categoryNames.add(name);
+    }
+
+    // 서버가 뜰 때 DB 의 이름으로 filter 를 새로 만든다. 데이터가 예상보다 많으면 그만큼 크게 만든다.
+    // 새 filter 를 채우는 동안 들어온 이름이 빠질 수 있지만, 그 경우에도 unique 제약이 중복을 막는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        BloomFilter categories = new BloomFilter(expectedNames, FALSE_POSITIVE_RATE);
+        categoryRepository.findAllNames().forEach(categories::add);
+        categoryNames = categories;
+
+        long memoCount = shardRouter.scatter(memoRepository::count).stream().mapToLong(Long::longValue).sum();
+        BloomFilter memos = new BloomFilter(Math.max(expectedNames, memoCount * 2), FALSE_POSITIVE_RATE);
+        PageRequest batch = PageRequest.of(0, REBUILD_BATCH_SIZE);
+        shardRouter.forEachShard(shard -> {
+            List<Object[]> rows = memoRepository.findNamesAfterId(0L, batch);
+            while (!rows.isEmpty()) {
+                for (Object[] row : rows) {
+                    if (row[1] != null)
+                        memos.add((String) row[1]);
+                }
+                rows = memoRepository.findNamesAfterId((Long) rows.get(rows.size() - 1)[0], batch);
+            }
+        });
+        memoNames = memos;
+    }
+}
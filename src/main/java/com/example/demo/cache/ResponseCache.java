@@ -0,0 +1,97 @@
+package com.example.demo.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// 자주 요청되는 목록 응답을 직렬화된 bytes 로 캐시한다. 캐시에 있으면 JPA 조회와 Jackson 직렬화를 모두 건너뛴다.
+// key 에 generation 을 넣어 두고, 메모/카테고리를 쓰는 곳에서 invalidate 로 generation 을 올리면
+// 이전 generation 의 응답은 더 이상 찾지 않고 크기 한도(max-bytes)에 따라 밀려난다.
+// 같은 key 를 동시에 요청하면 한 요청만 페이지를 만들고 나머지는 그 결과를 기다린다. (CacheLoads)
+@Component
+public class ResponseCache {
+    public static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    private final boolean enabled;
+    private final AsyncCache<Key, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    // query 는 페이지, 정렬, 검색어 등 응답을 결정하는 요청 값이다.
+    public record Key(long generation, String endpoint, MediaType mediaType, List<Object> query) {
+    }
+
+    public record Entry(byte[] body, String etag, MediaType mediaType) {
+    }
+
+    public ResponseCache(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder,
+                         @Value("${app.response-cache.enabled:true}") boolean enabled,
+                         @Value("${app.response-cache.max-bytes:67108864}") long maxBytes) {
+        this.enabled = enabled;
+        this.jsonMapper = objectMapper;
+        this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> entry.body().length)
+                .recordStats()
+                .buildAsync();
+    }
+
+    public Key key(String endpoint, MediaType mediaType, Object... query) {
+        return new Key(generation.get(), endpoint, mediaType, Arrays.asList(query));
+    }
+
+    public Entry getIfPresent(Key key) {
+        return enabled ? entries.synchronous().getIfPresent(key) : null;
+    }
+
+    // 캐시에 없으면 body 를 만들어 직렬화하고 저장한다. 같은 key 로 동시에 호출하면 body 는 한 번만 만든다.
+    public Entry get(Key key, String etag, Supplier<Object> body) {
+        if (!enabled)
+            return serialize(key.mediaType(), etag, body.get());
+        return CacheLoads.get(entries, key, k -> serialize(k.mediaType(), etag, body.get()));
+    }
+
+    // 트랜잭션 안에서 호출하면 커밋 후에 한 번 더 올린다.
+    // 커밋 전에 다른 요청이 예전 데이터를 새 generation 으로 캐시하는 경우를 막기 위해서다.
+    public void invalidate() {
+        generation.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    public CacheStats stats() {
+        return entries.synchronous().stats();
+    }
+
+    private Entry serialize(MediaType mediaType, String etag, Object body) {
+        try {
+            ObjectMapper mapper = CBOR.equals(mediaType) ? cborMapper : jsonMapper;
+            return new Entry(mapper.writeValueAsBytes(body), etag, mediaType);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write response: " + e.getOriginalMessage(), e);
+        }
+    }
+}
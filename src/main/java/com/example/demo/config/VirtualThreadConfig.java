@@ -0,0 +1,21 @@
+package com.example.demo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// app.virtual-threads.enabled=true 이면 Tomcat 이 요청마다 가상 스레드를 만들어서 처리한다. (application-virtual.properties)
+// 요청은 JDBC 응답을 기다리는 동안 carrier 스레드를 놓아주므로 server.tomcat.threads.max 가 동시 처리 수를 막지 않고,
+// DB 를 쓰는 요청의 동시 실행 수는 커넥션 풀 크기(spring.datasource.hikari.maximum-pool-size)가 정한다.
+// 풀을 기다리다 connection-timeout 이 지난 요청은 503 으로 응답한다. (ConnectionPoolExhaustedHandler)
+@Configuration
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import com.example.demo.admission.AdmissionControlInterceptor;
+import com.example.demo.admission.AdmissionProperties;
+import com.example.demo.datasource.ReplicaRoutingInterceptor;
+import com.example.demo.metrics.MetricsAccessInterceptor;
+import com.example.demo.metrics.RequestMetricsInterceptor;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@AllArgsConstructor
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class WebConfig implements WebMvcConfigurer {
+    private AdmissionControlInterceptor admissionControlInterceptor;
+    private RequestMetricsInterceptor requestMetricsInterceptor;
+    private ReplicaRoutingInterceptor replicaRoutingInterceptor;
+    private MetricsAccessInterceptor metricsAccessInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // /internal/** 는 한도와 지표에서 빼는 대신 허용된 곳에서만 부를 수 있다.
+        registry.addInterceptor(metricsAccessInterceptor)
+                .addPathPatterns("/internal/**");
+        // 한도를 넘은 요청은 다른 interceptor 를 거치지 않고 바로 503 으로 거절한다.
+        registry.addInterceptor(admissionControlInterceptor)
+                .excludePathPatterns("/internal/**");
+        registry.addInterceptor(requestMetricsInterceptor)
+                .excludePathPatterns("/internal/**");
+        registry.addInterceptor(replicaRoutingInterceptor);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.controller;
+
+import com.example.demo.cache.ResponseCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// 목록 응답을 ResponseCache 에 있는 bytes 로 내려준다.
+// 캐시에 있으면 저장해 둔 ETag 로 304 여부만 보고 바로 응답하고,
+// 없으면 목록 version 으로 ETag 를 만들어 확인한 뒤 페이지를 만들어 캐시에 넣는다.
+// 같은 목록도 JSON 과 CBOR 는 다른 bytes 이므로 strong ETag 에 고른 형식을 붙인다.
+final class CachedPages {
+    private CachedPages() {
+    }
+
+    private static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON, ResponseCache.CBOR);
+
+    // Accept 로 JSON 과 CBOR 중 하나를 고른다. 각 형식에는 그 형식을 포함하는 범위 중 가장 구체적인 범위의 q 를 쓰고
+    // (application/json;q=0, */* 이면 JSON 은 받지 않는다), q 가 큰 것, 같으면 더 구체적인 범위, 같으면 Accept 에
+    // 먼저 나온 범위로 맞춘 형식을 고른다. Accept 가 없으면 JSON, 둘 다 받지 않으면 406 이다.
+    static MediaType mediaType(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank())
+            return MediaType.APPLICATION_JSON;
+        List<MediaType> ranges;
+        try {
+            ranges = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Accept 가 올바르지 않습니다.");
+        }
+
+        MediaType best = null;
+        MediaType bestRange = null;
+        for (MediaType producible : PRODUCIBLE) {
+            MediaType range = null;
+            for (MediaType candidate : ranges) {
+                if (candidate.includes(producible) && (range == null || specificity(candidate) > specificity(range)))
+                    range = candidate;
+            }
+            if (range == null || range.getQualityValue() <= 0)
+                continue;
+            if (bestRange == null || compare(range, bestRange, ranges) > 0) {
+                best = producible;
+                bestRange = range;
+            }
+        }
+        if (best == null)
+            throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "지원하지 않는 형식입니다. (application/json, application/cbor)");
+        return best;
+    }
+
+    private static int compare(MediaType range, MediaType other, List<MediaType> ranges) {
+        int quality = Double.compare(range.getQualityValue(), other.getQualityValue());
+        if (quality != 0)
+            return quality;
+        int specificity = Integer.compare(specificity(range), specificity(other));
+        if (specificity != 0)
+            return specificity;
+        return Integer.compare(ranges.indexOf(other), ranges.indexOf(range));
+    }
+
+    // */* < type/* < type/subtype
+    private static int specificity(MediaType range) {
+        return range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+    }
+
+    static ResponseEntity<byte[]> serve(ResponseCache responseCache, WebRequest request, String endpoint,
+                                        Supplier<String> etag, Supplier<Object> body, Object... query) {
+        MediaType mediaType = mediaType(request);
+        ResponseCache.Key key = responseCache.key(endpoint, mediaType, query);
+        ResponseCache.Entry entry = responseCache.getIfPresent(key);
+        if (entry == null) {
+            String currentEtag = ETags.withMediaType(etag.get(), mediaType);
+            if (request.checkNotModified(currentEtag))
+                return null;
+            entry = responseCache.get(key, currentEtag, body);
+        } else if (request.checkNotModified(entry.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(entry.mediaType())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(entry.body());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ChangePage;
+import com.example.demo.service.ChangeLogService;
+import com.example.demo.service.ChangeStream;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// 변경 동기화. 클라이언트는 처음에 since=0 으로 next 가 더 없을 때까지 받고(전체),
+// 이후에는 마지막 next 를 since 로 넘겨서 그 사이 변경만 받는다. 410 이면 since=0 부터 다시 받는다.
+@RestController
+@RequestMapping("/changes")
+@AllArgsConstructor
+public class ChangeController {
+    private ChangeLogService changeLogService;
+    private ChangeStream changeStream;
+
+    // GET http://localhost:8080/changes?since=0&size=500
+    @GetMapping("")
+    public ChangePage getChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+                                 @RequestParam(value = "size", defaultValue = "500") int size) {
+        return changeLogService.getChanges(since, size);
+    }
+
+    // 실시간 변경. since(또는 재연결 시 Last-Event-ID)가 없으면 지금부터의 변경만 보낸다.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "since", required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return changeStream.subscribe(lastEventId != null ? lastEventId : since);
+    }
+}
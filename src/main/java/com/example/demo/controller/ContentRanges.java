@@ -0,0 +1,54 @@
+package com.example.demo.controller;
+
+// Range 헤더를 해석한다. 메모 content 는 글자(코드 포인트) 단위로 자르기 때문에 단위는 bytes 가 아니라 chars 를 쓴다.
+// 예) chars=0-999 (처음 1000 글자), chars=1000- (1000 번째 글자부터 끝까지), chars=-500 (마지막 500 글자)
+final class ContentRanges {
+    static final String UNIT = "chars";
+
+    private ContentRanges() {
+    }
+
+    // 요청 구간 [start, end). 해석할 수 없는 Range 는 RFC 대로 무시하고 전체를 보낸다.
+    record Range(int start, int end) {
+        int length() {
+            return end - start;
+        }
+    }
+
+    // Range 가 없거나 해석할 수 없으면 null, 범위를 벗어나면 start > end 인 빈 Range 를 리턴한다.
+    static Range parse(String header, int length) {
+        if (header == null || !header.startsWith(UNIT + "=") || header.contains(","))
+            return null;
+        String spec = header.substring(UNIT.length() + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0)
+                    return new Range(length, 0);
+                return new Range((int) Math.max(0, length - suffix), length);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+            if (end < start)
+                return null;
+            if (start >= length)
+                return new Range(length, 0);
+            return new Range((int) start, (int) Math.min(end + 1, length));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String contentRange(Range range, int length) {
+        return UNIT + " " + range.start() + "-" + (range.end() - 1) + "/" + length;
+    }
+
+    static String unsatisfied(int length) {
+        return UNIT + " */" + length;
+    }
+}
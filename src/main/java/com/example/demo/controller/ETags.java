@@ -0,0 +1,42 @@
+package com.example.demo.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+
+// 엔티티 version 으로 ETag 를 만들고, If-Match 헤더에서 version 을 꺼낸다.
+final class ETags {
+    private ETags() {
+    }
+
+    static String of(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    // 목록 ETag. 목록 version(MemoService / CategoryService 의 getListVersion)과 요청 조건(페이지, 정렬, 검색어)을 합쳐서 만든다.
+    static String ofList(String listVersion, Object... query) {
+        return "\"" + listVersion + "-" + Integer.toHexString(Arrays.hashCode(query)) + "\"";
+    }
+
+    // 응답 형식(JSON / CBOR)마다 다른 ETag 가 되도록 끝에 형식의 subtype 을 붙인다.
+    static String withMediaType(String etag, MediaType mediaType) {
+        return etag.substring(0, etag.length() - 1) + "-" + mediaType.getSubtype() + "\"";
+    }
+
+    // If-Match 가 없거나 `*` 이면 null (version 확인 안 함).
+    // If-Match 는 strong 비교라서 weak ETag(W/...)나 형식이 다른 값은 맞지 않는 것으로 보고 412 를 준다.
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return null;
+        String tag = ifMatch.trim();
+        try {
+            if (!tag.startsWith("\"") || !tag.endsWith("\"") || tag.length() < 3)
+                throw new NumberFormatException(tag);
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match 가 올바르지 않습니다.");
+        }
+    }
+}
@@ -1,37 +1,170 @@
 package com.example.demo.controller;
 
+import com.example.demo.admission.Admission;
+import com.example.demo.admission.AdmissionClass;
+import com.example.demo.cache.ResponseCache;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DeleteResult;
+import com.example.demo.dto.MemoImportResult;
 import com.example.demo.dto.MemoDTO;
+import com.example.demo.dto.MemoPatchDTO;
+import com.example.demo.dto.PageResponse;
 import com.example.demo.entity.Memo;
+import com.example.demo.service.MemoContentService;
+import com.example.demo.service.MemoExportService;
+import com.example.demo.service.MemoImportService;
 import com.example.demo.service.MemoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/memos")
 @AllArgsConstructor
 public class MemoController {
     private MemoService memoService;
+    private MemoImportService memoImportService;
+    private MemoExportService memoExportService;
+    private MemoContentService memoContentService;
+    private ResponseCache responseCache;
 
+    // 응답은 PageResponse 형식이고, Accept: application/cbor 로 요청하면 CBOR(바이너리)로 내려준다.
+    // 목록의 ETag 는 페이지를 만들어 보지 않고 변경 기록의 seq(MemoService.getListVersion)와 요청 조건으로 만든다.
+    // If-None-Match 가 같으면 checkNotModified 가 304 를 설정하고, 목록은 조회하지 않는다.
+    // 직렬화된 응답은 ResponseCache 에 저장해서 같은 요청은 DB 조회와 직렬화 없이 응답한다.
     @GetMapping("")
-    public Page<Memo> getMemos(@RequestParam(value="keyword", required=false) String keyword, Pageable pageable) {
-        return memoService.getMemos(pageable, keyword);
+    public ResponseEntity<byte[]> getMemos(@RequestParam(value="keyword", required=false) String keyword, Pageable pageable,
+                                           WebRequest request) {
+        return CachedPages.serve(responseCache, request, "memos",
+                () -> ETags.ofList(memoService.getListVersion(), "memos", pageable, keyword),
+                () -> PageResponse.of(memoService.getMemos(pageable, keyword)),
+                pageable, keyword);
+    }
+
+    // 목록 화면용: content 없이 id, name, category 만 내려준다.
+    @GetMapping("/summary")
+    public ResponseEntity<byte[]> getMemoSummaries(@RequestParam(value="keyword", required=false) String keyword, Pageable pageable,
+                                                   WebRequest request) {
+        return CachedPages.serve(responseCache, request, "summary",
+                () -> ETags.ofList(memoService.getListVersion(), "summary", pageable, keyword),
+                () -> PageResponse.of(memoService.getMemoSummaries(pageable, keyword)),
+                pageable, keyword);
+    }
+
+    // 커서 페이징: /memos/scroll?size=20&sort=name 으로 첫 페이지를 받고, 응답의 next 를 after 로 넘겨 다음 페이지를 받는다.
+    @GetMapping("/scroll")
+    public CursorPage<Memo> scrollMemos(@RequestParam(value="after", required=false) String after,
+                                        @RequestParam(value="size", defaultValue="20") int size,
+                                        @RequestParam(value="sort", defaultValue="id") String sort) {
+        return memoService.scrollMemos(after, size, sort);
     }
 
+    // 메모 전체를 NDJSON 으로 내려준다. category_id, keyword 로 거를 수 있다.
+    // 예) /memos/export?category_id=1&keyword=memo
+    @Admission(AdmissionClass.BULK)
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportMemos(@RequestParam(value="category_id", required=false) Long categoryId,
+                            @RequestParam(value="keyword", required=false) String keyword,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        memoService.flushPendingWrites();
+        memoExportService.exportMemos(response.getOutputStream(), categoryId, keyword);
+    }
+
+    // ETag 는 메모의 version 이다. 클라이언트가 If-None-Match 로 같은 값을 보내면 본문 없이 304 를 준다.
     @GetMapping("/{id}")
-    public Memo getMemo(@PathVariable Long id) {
+    public Memo getMemo(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(ETags.of(memoService.getMemoVersion(id))))
+            return null;
         return memoService.getMemo(id);
     }
 
+    // 메모 content 만 text/plain 으로 내려준다. Range: chars=시작-끝 으로 일부 구간만 받을 수 있고(206),
+    // 전체 글자(코드 포인트) 수는 X-Content-Chars 헤더로 알려주므로 HEAD 요청으로 길이만 확인할 수 있다.
+    // If-Range 에 ETag 를 넣으면 그 사이 메모가 바뀌었을 때 Range 를 무시하고 전체를 보낸다.
+    @GetMapping(value = "/{id}/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    public void getMemoContent(@PathVariable Long id,
+                               @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                               @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                               WebRequest webRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MemoContentService.ContentInfo info = memoContentService.getContentInfo(id);
+        String etag = ETags.of(info.version());
+        if (webRequest.checkNotModified(etag))
+            return;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, ContentRanges.UNIT);
+        response.setHeader("X-Content-Chars", String.valueOf(info.length()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        ContentRanges.Range range = ifRange == null || ifRange.equals(etag) ? ContentRanges.parse(rangeHeader, info.length()) : null;
+        if (range == null) {
+            range = new ContentRanges.Range(0, info.length());
+        } else if (range.length() <= 0) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, ContentRanges.unsatisfied(info.length()));
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        } else {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, ContentRanges.contentRange(range, info.length()));
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        }
+        if (request.getMethod().equals("HEAD"))
+            return;
+        memoContentService.writeContent(id, info, range.start(), range.end(), response.getWriter());
+    }
+
     @PostMapping("")
     public Memo createMemo(@RequestBody MemoDTO memoDTO){
         return memoService.createMemo(memoDTO);
     }
 
+    // 메모 대량 등록. body 는 메모 배열(JSON) 이나 한 줄에 메모 하나씩(NDJSON) 보낸다.
+    // @RequestBody 로 받으면 전체를 메모리에 올리기 때문에 요청 스트림을 그대로 넘긴다.
+    @Admission(AdmissionClass.BULK)
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public MemoImportResult importMemos(HttpServletRequest request) throws IOException {
+        return memoImportService.importMemos(request.getInputStream());
+    }
+
+    // If-Match 에 GET 으로 받은 ETag 를 넣으면, 그 사이에 다른 요청이 수정한 경우 412 로 거절한다.
     @PutMapping("")
-    public Memo modifyMemo(@RequestBody MemoDTO memoDTO){
-        return memoService.modifyMemo(memoDTO);
+    public ResponseEntity<Memo> modifyMemo(@RequestBody MemoDTO memoDTO,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Memo memo = memoService.modifyMemo(memoDTO, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(memo.getVersion())).body(memo);
+    }
+
+    // 보낸 필드만 수정한다. 큰 메모는 content 대신 바뀐 부분만 content_edits 로 보낸다.
+    // 예) PATCH /memos/3 {"content_edits": [{"offset": 120, "delete": 5, "insert": "hello"}]}
+    @PatchMapping("/{id}")
+    public ResponseEntity<Memo> patchMemo(@PathVariable Long id, @RequestBody MemoPatchDTO patch,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Memo memo = memoService.patchMemo(id, patch, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(memo.getVersion())).body(memo);
+    }
+
+    // 여러 메모를 한 번에 삭제한다. body 는 삭제할 id 배열이다. 예) POST /memos/delete [1, 2, 3]
+    @Admission(AdmissionClass.BULK)
+    @PostMapping("/delete")
+    public DeleteResult deleteMemos(@RequestBody List<Long> ids){
+        return DeleteResult.memos(memoService.deleteMemos(ids));
+    }
+
+    // 카테고리에 속한 메모를 모두 삭제한다. 예) DELETE /memos?category_id=1
+    @Admission(AdmissionClass.BULK)
+    @DeleteMapping("")
+    public DeleteResult deleteMemosByCategory(@RequestParam("category_id") Long categoryId){
+        return DeleteResult.memos(memoService.deleteMemosByCategory(categoryId));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,23 @@
+package com.example.demo.controller;
+
+import com.example.demo.metrics.RequestMetrics;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+// 내부용 성능 지표. API 별 응답 시간(p50/p99/max), 요청당 SQL/행 개수, 서비스 메서드 시간, 캐시 적중률을 보여준다.
+// GET http://localhost:8080/internal/metrics (loopback 이나 X-Internal-Token 이 맞는 요청만, MetricsAccessInterceptor)
+@RestController
+@RequestMapping("/internal/metrics")
+@AllArgsConstructor
+public class MetricsController {
+    private RequestMetrics requestMetrics;
+
+    @GetMapping("")
+    public Map<String, Object> getMetrics() {
+        return requestMetrics.snapshot();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.SuggestionDTO;
+import com.example.demo.search.NameSuggester;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+// 이름 자동완성. 입력할 때마다 호출해도 DB 를 읽지 않는다.
+// GET http://localhost:8080/suggest?prefix=메모&type=memo&limit=10 (type 을 빼면 메모와 카테고리를 함께 찾는다)
+@RestController
+@RequestMapping("/suggest")
+@AllArgsConstructor
+public class SuggestController {
+    private static final int MAX_LIMIT = 50;
+
+    private NameSuggester nameSuggester;
+
+    @GetMapping("")
+    public List<SuggestionDTO> suggest(@RequestParam("prefix") String prefix,
+                                       @RequestParam(value = "type", required = false) String type,
+                                       @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (type != null && !type.equals(NameSuggester.MEMO) && !type.equals(NameSuggester.CATEGORY))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "type 은 memo 또는 category 여야 합니다.");
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit 은 1 ~ " + MAX_LIMIT + " 사이여야 합니다.");
+        return nameSuggester.suggest(prefix, type, limit);
+    }
+}
@@ -1,13 +1,23 @@
 // 사용자로 부터 받은 데이터를 그대로 리턴해주는 API
 package com.example.demo.controller;
 
+import com.example.demo.cache.ResponseCache;
 import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.CategoryDeletePolicy;
+import com.example.demo.dto.CategoryOverviewDTO;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DeleteResult;
+import com.example.demo.dto.PageResponse;
 import com.example.demo.entity.Category;
 import com.example.demo.service.CategoryService;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 // @RestController
 // - Restful API를 만들때 사용하는 Controller 어노테이션
@@ -21,6 +31,7 @@ import org.springframework.web.bind.annotation.*;
 @AllArgsConstructor
 public class UserController {
     private final CategoryService categoryService;
+    private final ResponseCache responseCache;
     // @Postmapping("")
     // - POST `/categories` 로 요청하면 요청을 받는다. (RequestMapping의 URL을 상속)
     // - HTTP의 메서드는 GET, POST, PUT, PATCH, DELETE 등이 있는데 RestAPI에서는
@@ -39,13 +50,25 @@ public class UserController {
         return categoryService.createCategory(categoryDTO);
     }
 
+    // 대시보드용: 카테고리마다 속한 메모 개수를 붙여서 내려준다.
+    @GetMapping("/overview")
+    public List<CategoryOverviewDTO> getOverview(){
+        return categoryService.getOverview();
+    }
+
     // id처럼 URL에 `{}` 로 감싸져 있는것을 PathVariable이라 부르고 Controller 에서
     // `@PathVariable` 을 통해 가져올 수 있다.
     //
     // 보낼때 `/categories/1`  요런식으로 보내면 id로 1이 올 것이다.
+    //
+    // 응답에는 카테고리 version 이 ETag 로 붙는다. If-None-Match 로 같은 값을 보내면 본문 없이 304 를 준다.
+    // (카테고리는 캐시에서 가져오기 때문에 DB 조회 없이 비교할 수 있다.)
     @GetMapping("/{id}")
-    public Category getCategoryById(@PathVariable Long id){
-        return categoryService.getCategoryById(id);
+    public Category getCategoryById(@PathVariable Long id, WebRequest request){
+        Category category = categoryService.getCategoryById(id);
+        if (request.checkNotModified(ETags.of(category.getVersion())))
+            return null;
+        return category;
     }
 
 //    @GetMapping("")
@@ -53,9 +76,12 @@ public class UserController {
 //        return categoryService.getCategoryAll();
 //    }
 
+    // 카테고리에 남은 메모 처리 방법은 memos=REJECT|DETACH|DELETE 로 정한다. 없으면 app.category.delete-policy 를 따른다.
+    // 예) DELETE /categories/1?memos=DETACH
     @DeleteMapping("/{id}")
-    public Long deleteCategoryById(@PathVariable Long id) {
-        return categoryService.deleteCategoryById(id);
+    public DeleteResult deleteCategoryById(@PathVariable Long id,
+                                           @RequestParam(value = "memos", defaultValue = "${app.category.delete-policy:REJECT}") CategoryDeletePolicy policy) {
+        return categoryService.deleteCategoryById(id, policy);
     }
 
     //데이터를 하나씩 가져오기도 하지만 우리는 Data를 여러개를 가져오기도 한다 이때 사용하는 것이 페이징이다.
@@ -73,14 +99,35 @@ public class UserController {
     //`@RequestParam` 은 ?keyword={검색어} 처럼 URL에 추가적으로 붙는 것을 의미한다. `@PathVariable` 과 더불어 파라미터를 넘겨줄때 많이 이용한다. (Get 요청에는 Body가 없기 떄문에 Body대신 많이 쓴다)
     //
     //`Page` 는 페이지 정보가 포함된 데이터이다. JPA에서 생성한다.
+    // Page 를 그대로 내보내면 pageable, sort 정보가 중복되어서 필요한 값만 담은 PageResponse 로 바꿔서 응답한다.
+    // Accept: application/cbor 로 요청하면 CBOR(바이너리)로 내려준다.
+    //
+    // 목록 ETag 는 페이지를 만들지 않고 변경 기록의 seq(CategoryService.getListVersion)와 요청 조건으로 만든다.
+    // 직렬화된 응답은 ResponseCache 에 저장해서 같은 요청은 DB 조회와 직렬화 없이 응답한다.
     @GetMapping("")
-    public Page<Category> getCategories(Pageable pageable, @RequestParam(value="keyword", required=false) String keyword){
-        return categoryService.getCategories(pageable, keyword);
+    public ResponseEntity<byte[]> getCategories(Pageable pageable, @RequestParam(value="keyword", required=false) String keyword,
+                                                WebRequest request){
+        return CachedPages.serve(responseCache, request, "categories",
+                () -> ETags.ofList(categoryService.getListVersion(), "categories", pageable, keyword),
+                () -> PageResponse.of(categoryService.getCategories(pageable, keyword)),
+                pageable, keyword);
+    }
+
+    // Page 는 OFFSET 과 count 쿼리를 쓰기 때문에 뒤쪽 페이지일수록 느려진다.
+    // `/categories/scroll?size=10&sort=name&after={이전 응답의 next}` 처럼 커서로 넘기면 어느 페이지든 비용이 같다.
+    @GetMapping("/scroll")
+    public CursorPage<Category> scrollCategories(@RequestParam(value="after", required=false) String after,
+                                                 @RequestParam(value="size", defaultValue="20") int size,
+                                                 @RequestParam(value="sort", defaultValue="id") String sort) {
+        return categoryService.scrollCategories(after, size, sort);
     }
 
+    // If-Match 에 GET 으로 받은 ETag 를 넣으면, 그 사이에 다른 요청이 수정한 경우 412 로 거절한다.
     @PutMapping("")
-    public Category modifyCategories(@RequestBody CategoryDTO categoryDTO) {
-        return categoryService.modifyCategories(categoryDTO);
+    public ResponseEntity<Category> modifyCategories(@RequestBody CategoryDTO categoryDTO,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Category category = categoryService.modifyCategories(categoryDTO, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(category.getVersion())).body(category);
     }
 }
 // POST http://localhost:8080/categories 로 메세지를 보내 확인해보자.
@@ -0,0 +1,40 @@
+package com.example.demo.datasource;
+
+import com.example.demo.admission.AdmissionProperties;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.sql.SQLTransientConnectionException;
+
+// 커넥션 풀에서 connection-timeout 안에 커넥션을 받지 못한 요청은 500 대신 503 + Retry-After 로 응답한다.
+// 가상 스레드 모드에서는 Tomcat 스레드 수가 아니라 풀 크기가 동시 처리 수를 정하므로, 풀이 모자라면 여기서 거절된다.
+// 커넥션 대기 시간 초과(SQLTransientConnectionException)가 아닌 DB 오류는 다시 던져서 지금처럼 500 으로 응답한다.
+@RestControllerAdvice
+public class ConnectionPoolExhaustedHandler {
+    private final AdmissionProperties admissionProperties;
+
+    public ConnectionPoolExhaustedHandler(AdmissionProperties admissionProperties) {
+        this.admissionProperties = admissionProperties;
+    }
+
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public void handle(RuntimeException e, HttpServletResponse response) throws Exception {
+        if (!isPoolTimeout(e))
+            throw e;
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionProperties.getRetryAfterSeconds()));
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "요청이 많아 처리할 수 없습니다. 잠시 후 다시 시도해 주세요.");
+    }
+
+    private static boolean isPoolTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// app.datasource.replicas[0].url=jdbc:postgresql://replica1:5432/postgres
+// app.datasource.replicas[0].username=postgres
+// app.datasource.replicas[0].password=postgres
+@Data
+@ConfigurationProperties("app.datasource")
+public class ReplicaProperties {
+    List<Replica> replicas = new ArrayList<>();
+    // replica 상태 확인(isValid) 제한 시간. 확인 간격은 app.datasource.health-check-interval-ms
+    int healthCheckTimeoutSeconds = 1;
+
+    @Data
+    public static class Replica {
+        String url;
+        String username;
+        String password;
+    }
+}
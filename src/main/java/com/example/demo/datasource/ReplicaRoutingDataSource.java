@@ -0,0 +1,159 @@
+package com.example.demo.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 읽기 전용 트랜잭션(@Transactional(readOnly = true))의 커넥션은 replica 에서, 나머지는 primary 에서 가져온다.
+// replica 가 여러 개면 돌아가며 쓰고(round-robin), 상태 확인에 실패했거나 커넥션을 못 얻은 replica 는 건너뛴다.
+// 커넥션을 못 얻으면 다음 replica 로 넘어가고, 쓸 수 있는 replica 가 없으면 primary 를 쓴다.
+//
+// 트랜잭션이 시작될 때는 아직 readOnly 여부가 정해지기 전이라 LazyConnectionDataSourceProxy 로 감싸서
+// 첫 SQL 을 실행할 때 커넥션을 고르게 해야 한다. (ReplicaRoutingConfig)
+//
+// 한 요청에서 쓰기 트랜잭션을 실행한 뒤에는 replica 에 아직 반영되지 않았을 수 있으므로,
+// 그 요청이 끝날 때까지(ReplicaRoutingInterceptor 가 clearPin 할 때까지) 읽기도 primary 에서 한다.
+// 요청 밖의 스레드(스케줄러, ShardRouter 의 executor 등)는 clearPin 을 불러줄 곳이 없으므로
+// 쓰기를 한 트랜잭션이 끝날 때 고정을 푼다. 그렇지 않으면 그 스레드는 계속 primary 에서만 읽는다.
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> IN_REQUEST = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final int healthCheckTimeoutSeconds;
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, int healthCheckTimeoutSeconds) {
+        this.primary = primary;
+        this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            this.replicas.add(new Replica(name, dataSource));
+            targets.put(name, dataSource);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // 요청이 시작될 때 호출한다. 이 뒤로 생긴 primary 고정은 clearPin 을 부를 때까지 유지된다.
+    public static void beginRequest() {
+        IN_REQUEST.set(Boolean.TRUE);
+    }
+
+    // 요청이 끝날 때 호출해서 다음 요청이 다시 replica 를 쓸 수 있게 한다.
+    public static void clearPin() {
+        PINNED_TO_PRIMARY.remove();
+        IN_REQUEST.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!readsFromReplica())
+            return primary.getConnection();
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy)
+                continue;
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("replica {} is unavailable, trying the next one: {}", replica.name, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!readsFromReplica())
+            return PRIMARY;
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy)
+                return replica.name;
+        }
+        return PRIMARY;
+    }
+
+    private boolean readsFromReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive())
+                pin();
+            return false;
+        }
+        return PINNED_TO_PRIMARY.get() == null && !replicas.isEmpty();
+    }
+
+    // 요청 밖이면 처음 고정한 트랜잭션이 끝날 때 푼다. 안쪽 트랜잭션(REQUIRED)의 synchronization 은
+    // 바깥 트랜잭션에 등록되므로 가장 바깥 트랜잭션이 끝날 때 풀린다.
+    private static void pin() {
+        if (PINNED_TO_PRIMARY.get() != null)
+            return;
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+        if (IN_REQUEST.get() == null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    PINNED_TO_PRIMARY.remove();
+                }
+            });
+        }
+    }
+
+    // 모든 replica 에 커넥션을 얻어서 isValid 로 확인한다. 실패한 replica 는 다음 확인에서 성공할 때까지 쓰지 않는다.
+    @Scheduled(fixedDelayString = "${app.datasource.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(healthCheckTimeoutSeconds);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy)
+                log.info("replica {} is now {}", replica.name, healthy ? "healthy" : "unhealthy");
+            replica.healthy = healthy;
+        }
+    }
+
+    // replica 이름 -> 사용 가능 여부
+    public Map<String, Boolean> replicaHealth() {
+        Map<String, Boolean> health = new HashMap<>();
+        for (Replica replica : replicas)
+            health.put(replica.name, replica.healthy);
+        return health;
+    }
+}
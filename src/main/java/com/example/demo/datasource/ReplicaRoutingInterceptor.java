@@ -0,0 +1,22 @@
+package com.example.demo.datasource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// 요청 안에서 쓰기를 한 뒤 primary 로 고정된 읽기(ReplicaRoutingDataSource)를 요청이 끝날 때 푼다.
+// 라우팅을 켜지 않았을 때는 아무 일도 하지 않는다.
+@Component
+public class ReplicaRoutingInterceptor implements HandlerInterceptor {
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoutingDataSource.beginRequest();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoutingDataSource.clearPin();
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+// 메모가 남아 있는 카테고리를 삭제할 때 메모를 어떻게 할지.
+// REJECT: 삭제하지 않고 400, DETACH: 메모의 category 를 null 로 바꾼다, DELETE: 메모도 함께 삭제한다.
+public enum CategoryDeletePolicy {
+    REJECT, DETACH, DELETE
+}
@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 카테고리와 카테고리에 속한 메모 개수. JPQL 의 `select new ...` 로 바로 만들어진다.
+@Data
+@AllArgsConstructor
+public class CategoryOverviewDTO {
+    Long id;
+    String name;
+    Long memo_count;
+}
@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 변경 한 건. deleted 가 false 면 data 에 현재 메모(Memo) 또는 카테고리(Category)가 들어 있다.
+// 읽는 시점에 이미 삭제되었으면 data 는 null 이고, 뒤에 같은 id 의 tombstone 이 온다.
+@Data
+@AllArgsConstructor
+public class ChangeDTO {
+    long seq;
+    String type;
+    Long id;
+    boolean deleted;
+    Object data;
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// GET /changes 응답. 다음 요청의 since 에 next 를 넣는다. has_more 가 false 면 지금까지의 변경을 모두 받은 것이다.
+@Data
+@AllArgsConstructor
+public class ChangePage {
+    List<ChangeDTO> changes;
+    long next;
+    boolean has_more;
+}
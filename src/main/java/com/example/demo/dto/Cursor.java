@@ -0,0 +1,56 @@
+package com.example.demo.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// 커서 페이징의 `after` 토큰. 마지막으로 받은 행의 정렬 컬럼 값(key)과 id 를 담는다.
+// 클라이언트는 내용을 해석하지 않고 그대로 돌려주기만 하면 되므로 base64 로 감싸서 보낸다.
+public record Cursor(String sort, Long id, String key) {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    // key 가 null 인 행(이름 없는 메모)의 표시. 빈 문자열과 구분한다.
+    private static final String NULL_KEY = "\u0000";
+    // shard 별 커서를 이어 붙일 때 쓰는 구분자와 아직 읽지 않은 shard 의 표시. (base64url 에 없는 문자)
+    private static final String SEPARATOR = ".";
+    private static final String START = "~";
+
+    public String encode() {
+        String raw = sort + "\n" + id + "\n" + (key == null ? NULL_KEY : key);
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // shard 마다 마지막으로 꺼낸 행의 커서를 shard 순서대로 이어 붙인다. null 은 그 shard 에서 아직 꺼낸 행이 없다는 뜻이다.
+    public static String encodeAll(List<Cursor> positions) {
+        List<String> parts = new ArrayList<>(positions.size());
+        for (Cursor position : positions)
+            parts.add(position == null ? START : position.encode());
+        return String.join(SEPARATOR, parts);
+    }
+
+    public static List<Cursor> decodeAll(String token, String sort, int shardCount) {
+        String[] parts = token.split("\\" + SEPARATOR, -1);
+        if (parts.length != shardCount)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "잘못된 커서입니다.");
+        List<Cursor> positions = new ArrayList<>(shardCount);
+        for (String part : parts)
+            positions.add(part.equals(START) ? null : decode(part, sort));
+        return positions;
+    }
+
+    // 다른 정렬로 만든 토큰이나 깨진 토큰이 오면 400 을 준다.
+    public static Cursor decode(String token, String sort) {
+        try {
+            String[] parts = new String(DECODER.decode(token), StandardCharsets.UTF_8).split("\n", 3);
+            if (parts.length != 3 || !parts[0].equals(sort))
+                throw new IllegalArgumentException(token);
+            return new Cursor(parts[0], Long.parseLong(parts[1]), parts[2].equals(NULL_KEY) ? null : parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "잘못된 커서입니다.");
+        }
+    }
+}
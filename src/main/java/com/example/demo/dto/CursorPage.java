@@ -0,0 +1,45 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Function;
+
+// 커서(keyset) 페이징 응답.
+// Page 와 다르게 전체 개수(count 쿼리)를 알려주지 않고, 다음 페이지를 요청할 때 쓸 after 토큰만 준다.
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    // Spring Data 의 기본 최대 페이지 크기와 맞춘다.
+    private static final int MAX_SIZE = 2000;
+
+    List<T> content;
+    int size;
+    boolean hasNext;
+    // 다음 요청의 `after` 에 그대로 넣으면 된다. 마지막 페이지면 null
+    String next;
+
+    // 다음 페이지가 있는지 알기 위해 size 보다 한 개 더 읽는다.
+    public static PageRequest limit(int size) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size 는 1 ~ " + MAX_SIZE + " 사이여야 합니다.");
+        return PageRequest.of(0, size + 1);
+    }
+
+    // limit(size) 로 읽은 행으로 응답을 만든다. 마지막 행의 커서가 다음 요청의 after 가 된다.
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, Cursor> cursorOf) {
+        if (rows.size() <= size)
+            return new CursorPage<>(rows, size, false, null);
+        List<T> content = rows.subList(0, size);
+        return new CursorPage<>(content, size, true, cursorOf.apply(content.get(size - 1)).encode());
+    }
+
+    // 커서는 그대로 두고 내용만 바꾼다.
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(content.stream().map(mapper).toList(), size, hasNext, next);
+    }
+}
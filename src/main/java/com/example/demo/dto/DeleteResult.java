@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 삭제 API 응답. 삭제된 카테고리 수와, 함께 삭제되거나 카테고리가 빠진 메모 수.
+@Data
+@AllArgsConstructor
+public class DeleteResult {
+    int categories_deleted;
+    int memos_deleted;
+    int memos_detached;
+
+    public static DeleteResult memos(int deleted) {
+        return new DeleteResult(0, deleted, 0);
+    }
+}
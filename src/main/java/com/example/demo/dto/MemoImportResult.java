@@ -0,0 +1,48 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// POST /memos/batch 의 응답. 처리한 개수와 실패한 메모의 결과(요청 순서의 index, 이유)만 담는다.
+// 성공한 메모마다 결과를 들고 있으면 큰 import 에서 응답이 요청만큼 커지므로, 성공은 개수만 센다.
+// 실패도 MAX_FAILURES 개까지만 담고, 넘은 개수는 failures_omitted 에 센다.
+@Getter
+public class MemoImportResult {
+    static final int MAX_FAILURES = 1000;
+
+    int total;
+    int succeeded;
+    int failed;
+    List<Item> failures = new ArrayList<>();
+    int failures_omitted;
+    // body 를 끝까지 읽지 못했을 때의 이유. 이 경우 앞에서부터 total 개까지만 처리된 것이다.
+    @Setter
+    String error;
+
+    @Data
+    @AllArgsConstructor
+    public static class Item {
+        int index;
+        String name;
+        String error;
+    }
+
+    public void success() {
+        total++;
+        succeeded++;
+    }
+
+    public void failure(String name, String error) {
+        if (failures.size() < MAX_FAILURES)
+            failures.add(new Item(total, name, error));
+        else
+            failures_omitted++;
+        total++;
+        failed++;
+    }
+}
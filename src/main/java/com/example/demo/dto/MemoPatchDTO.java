@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// PATCH /memos/{id} 요청. 보내지 않은(null) 필드는 바꾸지 않는다.
+// content 전체를 보내는 대신 content_edits 로 바뀐 부분만 보낼 수 있다. (둘 중 하나만)
+@Data
+public class MemoPatchDTO {
+    String name;
+    String content;
+    List<ContentEdit> content_edits;
+    Long category_id;
+
+    // offset 위치에서 delete 글자를 지우고 insert 를 넣는다. offset 과 delete 는 GET /memos/{id}/content 의 Range 와 같은
+    // 코드 포인트 단위이고(JavaScript 에서는 Array.from(text) 의 index), 여러 개면 앞의 편집이 적용된 결과를 기준으로 순서대로 적용한다.
+    @Data
+    public static class ContentEdit {
+        int offset;
+        int delete;
+        String insert;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 메모 목록에서 content 를 뺀 요약 정보. JPQL 의 `select new ...` 로 바로 만들어진다.
+@Data
+@AllArgsConstructor
+public class MemoSummaryDTO {
+    Long id;
+    String name;
+    Long category_id;
+    String category_name;
+}
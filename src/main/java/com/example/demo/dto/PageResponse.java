@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+// 목록 API 응답.
+// Spring 의 Page 를 그대로 직렬화하면 pageable, sort 객체가 두 번씩 들어가서 필요한 것만 담는다.
+// {"content": [...], "page": 0, "size": 20, "totalElements": 3, "totalPages": 1, "hasNext": false}
+@Getter
+@AllArgsConstructor
+public class PageResponse<T> {
+    List<T> content;
+    int page;
+    int size;
+    long totalElements;
+    int totalPages;
+    boolean hasNext;
+
+    public static <T> PageResponse<T> of(Page<T> page) {
+        return new PageResponse<>(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages(), page.hasNext());
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 자동완성 결과 한 건. type 은 memo 또는 category
+@Data
+@AllArgsConstructor
+public class SuggestionDTO {
+    String type;
+    Long id;
+    String name;
+}
@@ -1,5 +1,7 @@
 package com.example.demo.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.example.demo.metrics.QueryCounter;
 import jakarta.persistence.*;
 import lombok.Builder;
 import lombok.Getter;
@@ -8,11 +10,15 @@ import lombok.ToString;
 // @Entity 를 적용하면 JPA에서는 해당 정보를 통해 데이터베이스 테이블을 생성하고,
 // 테이블의 데이터를 가져올 수 있게된다. 각 변수 하나하나가 데이터베이스 Colum이 된다.
 @Entity
+// 요청마다 읽어온 행 개수를 세기 위한 리스너 (/internal/metrics)
+@EntityListeners(QueryCounter.LoadListener.class)
 //@Table(name = "category")
 // @Getter getId, getName 같은 메서드를 자동으로 만들어주는 어노테이션이다.
 // Entity에는 Get이 있어야 제대로 동작한다
 @Getter
 @ToString
+// Memo.category 가 LAZY 라서 Hibernate 프록시로 직렬화될 때 프록시 내부 필드는 응답에서 뺀다.
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 // http://localhost:8080/categories/1 요청시
 // 다음과 같은 에러나서 추가
 // No default constructor for entity:
@@ -30,6 +36,11 @@ public class Category {
     @Column(length = 100, unique = true)
     String name;
 
+    // 수정될 때마다 1씩 올라간다. ETag 와 If-Match 확인에 쓴다.
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    Long version;
+
     // @Builder 는 Builder 패턴을 자동으로 만들어주는 생성자로 다음과 같이 이용할 수 있는 메서드들을 만들어준다.
     // Category category = Category.builder().name("카테고리이름").build();
     // 생성자 파라미터를 한번에 넣을 필요가 없고 순서를 외울 필요가 없다.
@@ -45,6 +56,11 @@ public class Category {
 
     public Category(){
     }
+    // 영속 상태의 카테고리 이름을 바꾼다. 트랜잭션이 끝날 때 update 되고 version 이 올라간다.
+    public void changeName(String name) {
+        this.name = name;
+    }
+
     @Builder
     public void UpdateCategory(Long id, String name){
         this.id = id;
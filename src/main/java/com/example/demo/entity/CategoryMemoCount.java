@@ -0,0 +1,56 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+// 카테고리별 메모 개수. 메모를 생성/삭제할 때 같은 트랜잭션에서 더하고 뺀다.
+// 한 카테고리에 메모가 몰리면 같은 행을 동시에 update 하느라 줄을 서기 때문에
+// 카테고리마다 stripe 개의 행으로 나눠서 그중 하나에 더하고, 읽을 때는 합친다.
+@Entity
+@Table(name = "category_memo_count")
+@IdClass(CategoryMemoCount.Key.class)
+@Getter
+public class CategoryMemoCount implements Persistable<CategoryMemoCount.Key> {
+    @Id
+    @Column(name = "category_id")
+    Long categoryId;
+
+    @Id
+    Integer stripe;
+
+    @Column(columnDefinition = "bigint default 0 not null")
+    long memoCount;
+
+    public CategoryMemoCount() {
+    }
+
+    public CategoryMemoCount(Long categoryId, Integer stripe) {
+        this.categoryId = categoryId;
+        this.stripe = stripe;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(categoryId, stripe);
+    }
+
+    // 행은 새로 만들 때만 save 하고 값은 increment 쿼리로만 바꾸기 때문에, save 할 때 select 없이 바로 insert 하게 한다.
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        Long categoryId;
+        Integer stripe;
+    }
+}
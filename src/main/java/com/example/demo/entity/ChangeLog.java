@@ -0,0 +1,41 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// 메모 / 카테고리 변경 기록 (GET /changes).
+// seq 는 insert 할 때 IdGenerator 가 만드는 시간 순서의 번호로 (shard 가 달라도 겹치지 않는다), 클라이언트는 마지막으로 받은 seq 다음부터 요청한다.
+// 생성과 수정은 deleted = false, 삭제는 deleted = true(tombstone) 로 남긴다. 내용은 남기지 않고 읽을 때 현재 값을 붙인다.
+// 행은 ChangeLogService 에서 JDBC batch insert 로만 만든다.
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_entity", columnList = "entity_type, entity_id, seq"),
+        @Index(name = "idx_change_log_changed_at", columnList = "changed_at")
+})
+@Getter
+public class ChangeLog {
+    public enum Type {
+        MEMO, CATEGORY
+    }
+
+    @Id
+    Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    Type entityType;
+
+    @Column(nullable = false)
+    Long entityId;
+
+    @Column(nullable = false)
+    boolean deleted;
+
+    @Column(nullable = false)
+    Instant changedAt;
+
+    public ChangeLog() {
+    }
+}
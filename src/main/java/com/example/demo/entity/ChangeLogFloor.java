@@ -0,0 +1,31 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+// 정리(compaction)로 지운 tombstone 중 가장 큰 seq. 행은 id = 1 한 개만 쓴다.
+// 이 값보다 작은 since 로 요청한 클라이언트는 삭제를 놓쳤을 수 있으므로 전체 목록을 다시 받아야 한다.
+@Entity
+@Table(name = "change_log_floor")
+@Getter
+public class ChangeLogFloor {
+    public static final int ID = 1;
+
+    @Id
+    Integer id;
+
+    @Column(nullable = false)
+    long purgedThrough;
+
+    public ChangeLogFloor() {
+    }
+
+    public ChangeLogFloor(long purgedThrough) {
+        this.id = ID;
+        this.purgedThrough = purgedThrough;
+    }
+
+    public void raise(long seq) {
+        purgedThrough = Math.max(purgedThrough, seq);
+    }
+}
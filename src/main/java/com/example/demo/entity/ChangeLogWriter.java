@@ -0,0 +1,27 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// 서버마다 "이 seq 이하의 변경 기록은 모두 커밋되었거나 롤백되었다" 는 값(safeSeq)을 남긴다. (ChangeLogWatermark)
+// 변경 기록은 살아 있는 서버들의 safeSeq 중 가장 작은 값까지만 내려준다.
+// 읽고 쓰는 것은 ChangeLogWatermark 가 SQL 로 직접 하고, 엔티티는 ddl-auto 로 테이블을 만들기 위해 둔다.
+@Entity
+@Table(name = "change_log_writer")
+@Getter
+public class ChangeLogWriter {
+    @Id
+    @Column(length = 100)
+    String owner;
+
+    @Column(nullable = false)
+    long safeSeq;
+
+    @Column(nullable = false)
+    Instant expiresAt;
+
+    public ChangeLogWriter() {
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.entity;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+// 메모 content 를 압축해서 저장한다. min-size 글자 이상인 content 만 압축하고,
+// 압축된 값은 MARKER + 원래 UTF-16 길이 + "," + 코드 포인트 수 + ":" + base64(deflate) 형식이라 압축하지 않은 기존 행도 그대로 읽힌다.
+// 코드 포인트 수는 content API 의 길이 단위다. 예전 형식(MARKER + UTF-16 길이 + ":")으로 저장된 행에는 없다.
+// 컬럼이 TEXT 라서 base64 로 저장한다. (bytea 로 바꾸면 기존 데이터 이전이 필요하다)
+// Hibernate 가 Spring bean 으로 만들기 때문에 설정값과 MeterRegistry 를 주입받을 수 있다.
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+    // TEXT 에 넣을 수 있고 일반 문서에는 나오지 않는 제어 문자로 시작한다.
+    public static final String MARKER = "\u0001Z1:";
+    public static final String CODEC_TIMER = "memo.content.codec";
+    public static final String RATIO = "memo.content.compression.ratio";
+
+    private final int minSize;
+    private final Timer compressTimer;
+    private final Timer decompressTimer;
+    private final DistributionSummary ratio;
+
+    public CompressedTextConverter(MeterRegistry meterRegistry,
+                                   @Value("${app.memo.compression.min-size:1024}") int minSize) {
+        this.minSize = minSize;
+        this.compressTimer = Timer.builder(CODEC_TIMER).tag("op", "compress").register(meterRegistry);
+        this.decompressTimer = Timer.builder(CODEC_TIMER).tag("op", "decompress").register(meterRegistry);
+        this.ratio = DistributionSummary.builder(RATIO).register(meterRegistry);
+    }
+
+    public static boolean isCompressed(String value) {
+        return value != null && value.startsWith(MARKER);
+    }
+
+    // 압축된 값에서 원래 UTF-16 길이를 꺼낸다. (content 전체를 풀지 않고 길이를 알 수 있다)
+    public static int originalLength(String value) {
+        int end = value.indexOf(':', MARKER.length());
+        int comma = value.indexOf(',', MARKER.length());
+        return Integer.parseInt(value.substring(MARKER.length(), comma >= 0 && comma < end ? comma : end));
+    }
+
+    // 압축된 값에서 원래 코드 포인트 수를 꺼낸다. 예전 형식이라 저장되어 있지 않으면 -1 을 리턴한다.
+    public static int codePointCount(String value) {
+        int end = value.indexOf(':', MARKER.length());
+        int comma = value.indexOf(',', MARKER.length());
+        if (comma < 0 || comma > end)
+            return -1;
+        return Integer.parseInt(value.substring(comma + 1, end));
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String content) {
+        // 원문이 MARKER 의 첫 글자로 시작하면 압축된 값과 구분할 수 없으므로 길이와 상관없이 압축한다.
+        if (content == null || (content.length() < minSize && !content.startsWith(MARKER.substring(0, 1))))
+            return content;
+        return compressTimer.record(() -> {
+            byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished())
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                String compressed = MARKER + content.length() + "," + content.codePointCount(0, content.length()) + ":" + Base64.getEncoder().encodeToString(out.toByteArray());
+                ratio.record((double) compressed.length() / content.length());
+                // base64 때문에 줄어들지 않는 content 는 그대로 둔다.
+                if (compressed.length() >= content.length() && !content.startsWith(MARKER.substring(0, 1)))
+                    return content;
+                return compressed;
+            } finally {
+                deflater.end();
+            }
+        });
+    }
+
+    @Override
+    public String convertToEntityAttribute(String value) {
+        if (!isCompressed(value))
+            return value;
+        return decompressTimer.record(() -> {
+            StringBuilder content = new StringBuilder(originalLength(value));
+            try (Reader reader = openReader(value)) {
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) >= 0)
+                    content.append(buffer, 0, read);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return content.toString();
+        });
+    }
+
+    // 압축된 값을 한 번에 풀지 않고 char 단위로 읽는다. 압축되지 않은 값은 그대로 읽는다.
+    public static Reader openReader(String value) {
+        if (!isCompressed(value))
+            return new StringReader(value == null ? "" : value);
+        String encoded = value.substring(value.indexOf(':', MARKER.length()) + 1);
+        InputStream decoded = Base64.getDecoder().wrap(new ByteArrayInputStream(encoded.getBytes(StandardCharsets.ISO_8859_1)));
+        return new InputStreamReader(new InflaterInputStream(decoded), StandardCharsets.UTF_8);
+    }
+}
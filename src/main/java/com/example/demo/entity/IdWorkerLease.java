@@ -0,0 +1,26 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// IdGenerator 의 worker 번호를 서버마다 하나씩 빌려준 기록. 서버는 expiresAt 전에 계속 연장하고,
+// 내려가면 행을 지운다. 연장하지 못하고 expiresAt 이 지난 번호는 다른 서버가 가져갈 수 있다.
+// 읽고 쓰는 것은 IdGenerator 가 SQL 로 직접 하고, 엔티티는 ddl-auto 로 테이블을 만들기 위해 둔다.
+@Entity
+@Table(name = "id_worker_lease")
+@Getter
+public class IdWorkerLease {
+    @Id
+    Integer workerId;
+
+    @Column(length = 100, nullable = false)
+    String owner;
+
+    @Column(nullable = false)
+    Instant expiresAt;
+
+    public IdWorkerLease() {
+    }
+}
@@ -1,16 +1,30 @@
 package com.example.demo.entity;
 
+import com.example.demo.metrics.QueryCounter;
 import jakarta.persistence.*;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+// 요청마다 읽어온 행 개수를 세기 위한 리스너 (/internal/metrics)
+@EntityListeners(QueryCounter.LoadListener.class)
+// 커서 페이징에서 name, id 순서로 정렬해서 읽을 때 쓰는 인덱스와 카테고리별 삭제에 쓰는 인덱스
+// 스키마를 바꿀 때는 db/migration 에도 같은 변경을 새 버전으로 추가한다.
+@Table(indexes = {
+        @Index(name = "idx_memo_name_id", columnList = "name, id"),
+        @Index(name = "idx_memo_category_id", columnList = "category_id")
+})
+// update 문에 바뀐 컬럼만 넣는다. 제목만 바꿀 때 큰 content 를 다시 쓰지 않기 위해서다.
+@DynamicUpdate
 @Getter
 @ToString
 public class Memo {
+    // id 는 DB 가 아니라 IdGenerator 가 만든다. 메모를 여러 shard 에 나눠 저장해도 id 가 겹치지 않고,
+    // 저장하기 전에 id 로 shard 를 정할 수 있다. (ShardRouter)
+    // version 이 null 이면 새 엔티티로 보고 persist 한다.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     Long id;
 
     // @ManyToOne 과 @JoinColumn 은 외래키 설정이다.
@@ -19,17 +33,30 @@ public class Memo {
     // 만약 Memo를 가져올 때 마다 Category의 데이터가 필요하다면 EAGER로 설정해주는게 좋고
     // 항상 필요하지 않으면 LAZY로 설정하는게 좋다.
     // Eager는 첫 로딩시 같이 가져오고 LAZY는 나중에 getCategory를 사용하면 가져온다.
-    @ManyToOne(fetch = FetchType.EAGER)
+    // EAGER 로 두면 목록 조회 시 메모마다 category select 가 따로 나가서(N+1) LAZY 로 바꾸고,
+    // category 가 필요한 조회는 MemoRepository 에서 @EntityGraph / join fetch 로 한 번에 가져온다.
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     Category category;
 
-    @Column(length = 100)
+    // 같은 이름의 메모는 저장할 수 없다. 동시에 같은 이름으로 생성해도 DB 의 unique 제약이 막아준다.
+    @Column(length = 100, unique = true)
     String name;
 
     // columnDefinition 은 타입을 지정해 줄 떄 사용한다. TEXT 는 사이즈 제한이 없는 텍스트를 저장할떄 사용된다.
+    // 긴 content 는 압축해서 저장한다. (CompressedTextConverter)
+    // 엔티티를 읽으면 content 도 함께 읽힌다. content 가 필요 없는 조회는 MemoSummaryDTO 같은 projection 을 쓰고,
+    // 큰 content 는 MemoContentService 로 필요한 구간만 읽는다.
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     String content;
 
+    // @Version 은 수정될 때마다 1씩 올라가는 값으로, ETag 로 내려주고 동시 수정(낙관적 락)을 막는 데 쓴다.
+    // 기존 데이터가 있는 테이블에 컬럼이 추가될 때 0 으로 채워지도록 default 를 준다.
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    Long version;
+
     @Builder
     public Memo(Long id, String name, String content, Category category){
         this.id = id;
@@ -41,4 +68,21 @@ public class Memo {
     public Memo() {
 
     }
+
+    // 아직 DB 에 쓰지 않은 수정 내용을 담은 메모를 만든다. (MemoWriteBuffer 용, 영속 상태가 아니다)
+    public static Memo pending(Memo base, Category category, String name, String content, Long version) {
+        Memo memo = new Memo(base.id, name, content, category);
+        memo.version = version;
+        return memo;
+    }
+
+    // 영속 상태의 메모를 수정한다. 트랜잭션이 끝날 때 update 가 실행되고 version 이 올라간다.
+    public void modify(String name, String content) {
+        this.name = name;
+        this.content = content;
+    }
+
+    public void changeCategory(Category category) {
+        this.category = category;
+    }
 }
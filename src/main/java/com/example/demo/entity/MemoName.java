@@ -0,0 +1,27 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// 샤딩을 켰을 때 메모 이름이 어느 메모의 것인지 shard 0 에 남기는 등록부. (MemoNameRegistry)
+// memo 의 name unique 제약은 shard 안에서만 지켜지므로, 모든 shard 에서 겹치지 않게 하려고 이름을 여기에 먼저 잡는다.
+// 읽고 쓰는 것은 MemoNameRegistry 가 SQL 로 직접 하고, 엔티티는 ddl-auto 로 테이블을 만들기 위해 둔다.
+@Entity
+@Table(name = "memo_name", indexes = @Index(name = "idx_memo_name_memo_id", columnList = "memo_id"))
+@Getter
+public class MemoName {
+    @Id
+    @Column(length = 100)
+    String name;
+
+    @Column(nullable = false)
+    Long memoId;
+
+    @Column(nullable = false)
+    Instant claimedAt;
+
+    public MemoName() {
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Hibernate 가 실행하는 SQL 을 QueryCounter 로 세기 위해 StatementInspector 를 등록한다.
+@Configuration
+public class HibernateMetricsConfig {
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCounter.Inspector());
+    }
+}
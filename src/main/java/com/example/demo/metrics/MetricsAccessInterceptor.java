@@ -0,0 +1,50 @@
+package com.example.demo.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// 내부용 지표(/internal/**)는 엔드포인트별 응답 시간과 SQL 개수를 보여주므로 외부에 열지 않는다.
+// 같은 서버(loopback)에서 온 요청이나, app.internal.token 을 설정했으면 X-Internal-Token 헤더가 같은 요청만 통과시키고
+// 나머지는 403 으로 거절한다. 이 경로는 admission 한도를 거치지 않기 때문에 여기서 막는다.
+@Component
+public class MetricsAccessInterceptor implements HandlerInterceptor {
+    static final String TOKEN_HEADER = "X-Internal-Token";
+
+    private final byte[] token;
+
+    public MetricsAccessInterceptor(@Value("${app.internal.token:}") String token) {
+        this.token = token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (isLoopback(request.getRemoteAddr()) || hasToken(request.getHeader(TOKEN_HEADER)))
+            return true;
+        response.sendError(HttpStatus.FORBIDDEN.value(), "내부용 경로입니다.");
+        return false;
+    }
+
+    private boolean hasToken(String header) {
+        return token != null && header != null
+                && MessageDigest.isEqual(token, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // remoteAddr 은 IP 문자열이라 DNS 조회를 하지 않는다.
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.metrics;
+
+import jakarta.persistence.PostLoad;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// 요청 하나 동안 실행된 SQL 개수와 DB 에서 읽어온 엔티티(행) 개수를 센다.
+// start() ~ stop() 사이에 같은 스레드에서 실행된 것과, propagate 로 감싸서 다른 스레드(ShardRouter 의 scatter 등)에 넘긴
+// 작업에서 실행된 것을 센다. 여러 스레드가 같이 더하므로 LongAdder 를 쓴다.
+public final class QueryCounter {
+    public record Counts(long statements, long rows) {
+    }
+
+    private static final class Mutable {
+        final LongAdder statements = new LongAdder();
+        final LongAdder rows = new LongAdder();
+    }
+
+    private static final ThreadLocal<Mutable> COUNTS = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static void start() {
+        COUNTS.set(new Mutable());
+    }
+
+    public static Counts stop() {
+        Mutable counts = COUNTS.get();
+        COUNTS.remove();
+        return counts == null ? new Counts(0, 0) : new Counts(counts.statements.sum(), counts.rows.sum());
+    }
+
+    // 지금 스레드에서 세고 있으면, work 를 다른 스레드에서 실행해도 같은 개수에 더해지도록 감싼다.
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        Mutable counts = COUNTS.get();
+        if (counts == null)
+            return work;
+        return () -> {
+            Mutable previous = COUNTS.get();
+            COUNTS.set(counts);
+            try {
+                return work.get();
+            } finally {
+                if (previous == null)
+                    COUNTS.remove();
+                else
+                    COUNTS.set(previous);
+            }
+        };
+    }
+
+    // Hibernate 가 SQL 을 실행하기 전에 호출한다. SQL 은 바꾸지 않는다.
+    public static class Inspector implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            Mutable counts = COUNTS.get();
+            if (counts != null)
+                counts.statements.increment();
+            return sql;
+        }
+    }
+
+    // 엔티티에 @EntityListeners 로 붙여서 엔티티가 로딩될 때마다 행 개수를 올린다.
+    public static class LoadListener {
+        @PostLoad
+        public void onLoad(Object entity) {
+            Mutable counts = COUNTS.get();
+            if (counts != null)
+                counts.rows.increment();
+        }
+    }
+}
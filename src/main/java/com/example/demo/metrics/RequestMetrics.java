@@ -0,0 +1,166 @@
+package com.example.demo.metrics;
+
+import com.example.demo.admission.AdmissionControlInterceptor;
+import com.example.demo.cache.CategoryCache;
+import com.example.demo.cache.ResponseCache;
+import com.example.demo.entity.CompressedTextConverter;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// API / 서비스 메서드별 응답 시간과 요청당 SQL 개수를 Micrometer 에 기록하고,
+// /internal/metrics 에서 볼 수 있게 요약해준다.
+@Component
+public class RequestMetrics {
+    static final String REQUESTS = "api.requests";
+    static final String STATEMENTS = "api.requests.statements";
+    static final String ROWS = "api.requests.rows";
+    static final String SERVICE_CALLS = "service.calls";
+
+    private final MeterRegistry meterRegistry;
+    private final CategoryCache categoryCache;
+    private final ResponseCache responseCache;
+
+    public RequestMetrics(MeterRegistry meterRegistry, CategoryCache categoryCache, ResponseCache responseCache) {
+        this.meterRegistry = meterRegistry;
+        this.categoryCache = categoryCache;
+        this.responseCache = responseCache;
+    }
+
+    public void recordRequest(String endpoint, long nanos, QueryCounter.Counts counts) {
+        timer(REQUESTS, "endpoint", endpoint).record(nanos, TimeUnit.NANOSECONDS);
+        summary(STATEMENTS, endpoint).record(counts.statements());
+        summary(ROWS, endpoint).record(counts.rows());
+    }
+
+    public void recordServiceCall(String method, long nanos) {
+        timer(SERVICE_CALLS, "method", method).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String tag, String value) {
+        return Timer.builder(name)
+                .tag(tag, value)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, String endpoint) {
+        return DistributionSummary.builder(name)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    // 시간 단위는 ms. 퍼센타일과 max 는 Micrometer 기본 설정대로 최근 몇 분 동안의 값이다.
+    public Map<String, Object> snapshot() {
+        Map<String, Object> endpoints = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(REQUESTS).timers()) {
+            String endpoint = timer.getId().getTag("endpoint");
+            Map<String, Object> stats = timerStats(timer);
+            DistributionSummary statements = meterRegistry.find(STATEMENTS).tag("endpoint", endpoint).summary();
+            DistributionSummary rows = meterRegistry.find(ROWS).tag("endpoint", endpoint).summary();
+            if (statements != null) {
+                stats.put("statementsMean", statements.mean());
+                stats.put("statementsMax", statements.max());
+            }
+            if (rows != null) {
+                stats.put("rowsMean", rows.mean());
+                stats.put("rowsMax", rows.max());
+            }
+            endpoints.put(endpoint, stats);
+        }
+
+        Map<String, Object> services = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(SERVICE_CALLS).timers())
+            services.put(timer.getId().getTag("method"), timerStats(timer));
+
+        Map<String, Object> caches = new LinkedHashMap<>();
+        caches.put("category.id", cacheStats(categoryCache.idStats()));
+        caches.put("category.name", cacheStats(categoryCache.nameStats()));
+        caches.put("response", cacheStats(responseCache.stats()));
+
+        // 메모 content 압축 (CompressedTextConverter)
+        Map<String, Object> compression = new LinkedHashMap<>();
+        for (Timer timer : meterRegistry.find(CompressedTextConverter.CODEC_TIMER).timers())
+            compression.put(timer.getId().getTag("op"), timerStats(timer));
+        DistributionSummary ratio = meterRegistry.find(CompressedTextConverter.RATIO).summary();
+        if (ratio != null)
+            compression.put("ratioMean", ratio.mean());
+
+        // 요청 종류 / Controller 메서드별 동시 실행 한도 (AdmissionControlInterceptor)
+        Map<String, Object> admission = new TreeMap<>();
+        for (Gauge gauge : meterRegistry.find(AdmissionControlInterceptor.LIMIT).gauges()) {
+            String limiter = gauge.getId().getTag("limiter");
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", gauge.value());
+            Gauge inFlight = meterRegistry.find(AdmissionControlInterceptor.IN_FLIGHT).tag("limiter", limiter).gauge();
+            if (inFlight != null)
+                stats.put("inFlight", inFlight.value());
+            Counter rejected = meterRegistry.find(AdmissionControlInterceptor.REJECTED).tag("limiter", limiter).counter();
+            stats.put("rejected", rejected == null ? 0 : rejected.count());
+            admission.put(limiter, stats);
+        }
+
+        // 커넥션 풀. 가상 스레드로 실행할 때는 이 풀 크기가 DB 에 동시에 들어가는 요청 수를 정한다.
+        Map<String, Object> pools = new TreeMap<>();
+        for (Gauge gauge : meterRegistry.find("hikaricp.connections.active").gauges()) {
+            String pool = gauge.getId().getTag("pool");
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", gauge.value());
+            Gauge pending = meterRegistry.find("hikaricp.connections.pending").tag("pool", pool).gauge();
+            if (pending != null)
+                stats.put("pending", pending.value());
+            Gauge max = meterRegistry.find("hikaricp.connections.max").tag("pool", pool).gauge();
+            if (max != null)
+                stats.put("max", max.value());
+            Counter timeouts = meterRegistry.find("hikaricp.connections.timeout").tag("pool", pool).counter();
+            stats.put("timeouts", timeouts == null ? 0 : timeouts.count());
+            pools.put(pool, stats);
+        }
+
+        // carrier 스레드에 고정된 가상 스레드 (VirtualThreadPinnedMonitor). 고정된 위치(우리 코드의 첫 frame)별 횟수
+        Map<String, Object> pinned = new TreeMap<>();
+        for (Counter counter : meterRegistry.find(VirtualThreadPinnedMonitor.PINNED).counters())
+            pinned.put(counter.getId().getTag("frame"), counter.count());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("endpoints", endpoints);
+        snapshot.put("services", services);
+        snapshot.put("caches", caches);
+        snapshot.put("compression", compression);
+        snapshot.put("admission", admission);
+        snapshot.put("pools", pools);
+        snapshot.put("pinned", pinned);
+        return snapshot;
+    }
+
+    private static Map<String, Object> timerStats(Timer timer) {
+        HistogramSnapshot histogram = timer.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", histogram.count());
+        for (ValueAtPercentile percentile : histogram.percentileValues())
+            stats.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        stats.put("max", histogram.max(TimeUnit.MILLISECONDS));
+        stats.put("mean", histogram.mean(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    private static Map<String, Object> cacheStats(CacheStats stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictions", stats.evictionCount());
+        return map;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Controller 메서드 단위로 응답 시간과 SQL 개수를 기록한다.
+// app.metrics.slow-request-ms 보다 오래 걸린 요청은 SQL 개수와 함께 로그로 남긴다. (0 이면 끔)
+@Slf4j
+@Component
+public class RequestMetricsInterceptor implements HandlerInterceptor {
+    private static final String START = RequestMetricsInterceptor.class.getName() + ".start";
+
+    private final RequestMetrics requestMetrics;
+    private final long slowRequestMillis;
+
+    public RequestMetricsInterceptor(RequestMetrics requestMetrics,
+                                     @Value("${app.metrics.slow-request-ms:0}") long slowRequestMillis) {
+        this.requestMetrics = requestMetrics;
+        this.slowRequestMillis = slowRequestMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            request.setAttribute(START, System.nanoTime());
+            QueryCounter.start();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START);
+        if (!(handler instanceof HandlerMethod handlerMethod) || start == null)
+            return;
+        long nanos = System.nanoTime() - (Long) start;
+        QueryCounter.Counts counts = QueryCounter.stop();
+        String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        requestMetrics.recordRequest(endpoint, nanos, counts);
+
+        long millis = nanos / 1_000_000;
+        if (slowRequestMillis > 0 && millis >= slowRequestMillis) {
+            log.warn("slow request {} {} -> {} ({}): {} ms, {} statements, {} rows",
+                    request.getMethod(), request.getRequestURI(), endpoint, response.getStatus(),
+                    millis, counts.statements(), counts.rows());
+        }
+    }
+}
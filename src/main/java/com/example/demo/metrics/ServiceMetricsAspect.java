@@ -0,0 +1,37 @@
+package com.example.demo.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// @Service 클래스(MemoService, CategoryService 같은 서비스 진입점)의 public 메서드 실행 시간을 메서드별로 기록한다.
+// 서비스 안에서 다른 서비스를 부르는 호출(변경 기록 남기기처럼 행마다 불리는 것)은 바깥 호출 시간에 이미 들어가므로
+// 따로 기록하지 않고, 스레드에서 가장 바깥의 서비스 호출만 기록한다. @Component 인 보조 클래스는 기록하지 않는다.
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    // 현재 스레드가 기록 중인 서비스 호출 안에 있는지
+    private static final ThreadLocal<Boolean> IN_SERVICE = new ThreadLocal<>();
+
+    private final RequestMetrics requestMetrics;
+
+    public ServiceMetricsAspect(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Around("@within(org.springframework.stereotype.Service) && execution(public * *(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (IN_SERVICE.get() != null)
+            return joinPoint.proceed();
+        IN_SERVICE.set(Boolean.TRUE);
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            IN_SERVICE.remove();
+            String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+            requestMetrics.recordServiceCall(method, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+
+// 가상 스레드가 carrier 스레드에 고정된 채(synchronized 안이나 native 호출 중) pinned-threshold-ms 보다 오래
+// 기다리면 JFR 이 jdk.VirtualThreadPinned 이벤트를 남긴다. 이 이벤트를 받아서 고정된 위치별로 센다.
+// 위치는 stack trace 에서 처음 나오는 우리 코드(com.example) frame 이고, 없으면 맨 위 frame 이다.
+// 횟수는 /internal/metrics 의 pinned 에서 볼 수 있다.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadPinnedMonitor {
+    static final String PINNED = "jvm.virtual-threads.pinned";
+    private static final String OWN_PACKAGE = "com.example.";
+
+    private final MeterRegistry meterRegistry;
+    private final RecordingStream stream;
+
+    public VirtualThreadPinnedMonitor(MeterRegistry meterRegistry,
+                                      @Value("${app.virtual-threads.pinned-threshold-ms:20}") long thresholdMs) {
+        this.meterRegistry = meterRegistry;
+        this.stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::record);
+        stream.startAsync();
+    }
+
+    private void record(RecordedEvent event) {
+        String frame = frameOf(event.getStackTrace());
+        Counter.builder(PINNED).tag("frame", frame).register(meterRegistry).increment();
+        log.warn("virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), frame);
+    }
+
+    private static String frameOf(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty())
+            return "unknown";
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.getMethod().getType().getName().startsWith(OWN_PACKAGE))
+                return name(frame);
+        }
+        return name(stackTrace.getFrames().get(0));
+    }
+
+    private static String name(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void close() {
+        stream.close();
+    }
+}
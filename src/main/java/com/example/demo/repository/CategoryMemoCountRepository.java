@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CategoryMemoCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CategoryMemoCountRepository extends JpaRepository<CategoryMemoCount, CategoryMemoCount.Key> {
+    // 읽지 않고 DB 에서 바로 더한다. stripe 행이 아직 없으면 0 을 리턴한다.
+    @Modifying
+    @Query("update CategoryMemoCount c set c.memoCount = c.memoCount + :delta where c.categoryId = :categoryId and c.stripe = :stripe")
+    int increment(@Param("categoryId") Long categoryId, @Param("stripe") Integer stripe, @Param("delta") long delta);
+
+    @Modifying
+    @Query("delete from CategoryMemoCount c where c.categoryId = :categoryId")
+    void deleteByCategoryId(@Param("categoryId") Long categoryId);
+
+    // 삭제된 카테고리의 stripe 행을 지운다.
+    @Modifying
+    @Query("delete from CategoryMemoCount c where c.categoryId not in (select g.id from Category g)")
+    int deleteOrphans();
+
+    // [categoryId, stripe, memoCount]
+    @Query("select c.categoryId, c.stripe, c.memoCount from CategoryMemoCount c")
+    List<Object[]> findAllStripes();
+}
@@ -1,11 +1,16 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.CategoryOverviewDTO;
 import com.example.demo.entity.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 // @Repository 는 데이터를 접근하는 객체를 만들때 생성한다.
@@ -31,4 +36,33 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     //Pageable을 파라미터로 넣으면 페이징 요청을 실행할 수 있고, Page를 리턴으로 받으면 페이지 정보가 포함된 리스트를 응답으로 보내줄 수 있다.
     Page<Category> findByNameContains(Pageable pageable, String name);
     Category getCategoriesById(Long category_id);
+
+    @Query("select c.name from Category c")
+    List<String> findAllNames();
+
+    // 자동완성(NameSuggester)을 채울 때 쓴다. [id, name]
+    @Query("select c.id, c.name from Category c order by c.id")
+    List<Object[]> findIdsAndNames();
+
+    // deleteById 는 엔티티를 먼저 읽고 지우기 때문에 delete 한 번으로 지운다.
+    @Modifying
+    @Query("delete from Category c where c.id = :id")
+    int deleteCategoryById(@Param("id") Long id);
+
+    @Query("select c.id from Category c")
+    List<Long> findAllIds();
+
+    // 카테고리별 메모 개수. memo 테이블은 읽지 않고 카테고리마다 stripe 개의 카운터 행만 합친다.
+    @Query("select new com.example.demo.dto.CategoryOverviewDTO(c.id, c.name, coalesce(sum(n.memoCount), 0)) " +
+            "from Category c left join CategoryMemoCount n on n.categoryId = c.id group by c.id, c.name order by c.id")
+    List<CategoryOverviewDTO> findOverview();
+
+    // 커서 페이징용 쿼리. name 은 unique 인덱스가 있어서 (name, id) 순서로 바로 읽을 수 있다.
+    List<Category> findAllBy(Pageable pageable);
+
+    @Query("select c from Category c where c.id > :id order by c.id")
+    List<Category> findAfterId(@Param("id") Long id, Pageable pageable);
+
+    @Query("select c from Category c where c.name > :name or (c.name = :name and c.id > :id) order by c.name, c.id")
+    List<Category> findAfterName(@Param("name") String name, @Param("id") Long id, Pageable pageable);
 }
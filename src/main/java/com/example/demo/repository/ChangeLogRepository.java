@@ -0,0 +1,38 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.ChangeLog;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ChangeLogRepository extends JpaRepository<ChangeLog, Long> {
+    // since 다음 변경을 seq 순서로 읽는다. through 보다 큰 seq 는 그보다 작은 seq 가 아직 커밋되지 않았을 수 있어서 뺀다.
+    @Query("select c from ChangeLog c where c.seq > :since and c.seq <= :through order by c.seq")
+    List<ChangeLog> findAfter(@Param("since") long since, @Param("through") long through, Pageable pageable);
+
+    @Query("select coalesce(max(c.seq), 0) from ChangeLog c where c.seq <= :through")
+    long findLastSeq(@Param("through") long through);
+
+    @Query("select coalesce(max(c.seq), 0) from ChangeLog c")
+    long findMaxSeq();
+
+    // 같은 메모/카테고리에 더 최근 변경이 있으면 예전 행은 필요 없다. 클라이언트는 최근 행에서 현재 값을 받는다.
+    @Modifying
+    @Query("delete from ChangeLog c where c.changedAt < :before and exists " +
+            "(select n.seq from ChangeLog n where n.entityType = c.entityType and n.entityId = c.entityId and n.seq > c.seq)")
+    int deleteSuperseded(@Param("before") Instant before);
+
+    @Query("select max(c.seq) from ChangeLog c where c.deleted = true and c.changedAt < :before")
+    Long findLastTombstoneSeq(@Param("before") Instant before);
+
+    @Modifying
+    @Query("delete from ChangeLog c where c.deleted = true and c.seq <= :seq")
+    int deleteTombstonesThrough(@Param("seq") long seq);
+}
@@ -1,15 +1,113 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.MemoSummaryDTO;
 import com.example.demo.entity.Memo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+// Memo.category 는 LAZY 이기 때문에 응답으로 category 까지 내보내는 조회는
+// @EntityGraph 나 join fetch 로 category 를 같은 쿼리에서 가져온다. (메모마다 category select 가 추가로 나가는 N+1 방지)
 @Repository
 public interface MemoRepository extends JpaRepository<Memo, Long> {
     Optional<Memo> findByName(String name);
+    boolean existsByName(String name);
+
+    @EntityGraph(attributePaths = "category")
     Page<Memo> findByNameContains(Pageable pageable, String name);
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Page<Memo> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Optional<Memo> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    List<Memo> findAllById(Iterable<Long> ids);
+
+    // 검색 색인을 다시 만들 때 id 순서대로 끊어 읽기 위해 사용한다. Slice 는 count 쿼리를 실행하지 않는다.
+    Slice<Memo> findByIdGreaterThan(Long id, Pageable pageable);
+
+    // 커서 페이징용 쿼리. OFFSET 없이 마지막으로 본 (정렬 값, id) 다음부터 읽으므로 깊은 페이지도 첫 페이지와 비용이 같다.
+    // 개수 제한은 Pageable 로 넘기고, List 로 받아서 count 쿼리가 나가지 않게 한다.
+    @EntityGraph(attributePaths = "category")
+    List<Memo> findAllBy(Pageable pageable);
+
+    @Query("select m from Memo m left join fetch m.category where m.id > :id order by m.id")
+    List<Memo> findAfterId(@Param("id") Long id, Pageable pageable);
+
+    // name 정렬은 이름이 있는 메모를 (name, id) 순서로 먼저 읽고, 이름이 없는(null) 메모를 id 순서로 뒤에 읽는다.
+    // null 의 정렬 위치가 DB 마다 달라서(PostgreSQL 은 뒤, H2 는 앞) 쿼리를 나눈다.
+    @Query("select m from Memo m left join fetch m.category where m.name is not null order by m.name, m.id")
+    List<Memo> findNamed(Pageable pageable);
+
+    @Query("select m from Memo m left join fetch m.category where m.name > :name or (m.name = :name and m.id > :id) order by m.name, m.id")
+    List<Memo> findAfterName(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    @Query("select m from Memo m left join fetch m.category where m.name is null and m.id > :id order by m.id")
+    List<Memo> findUnnamedAfterId(@Param("id") Long id, Pageable pageable);
+
+    // ETag 확인용. 메모 본문을 읽지 않고 version 만 가져온다.
+    @Query("select m.version from Memo m where m.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // 대량 등록 시 묶음 단위로 중복 이름을 확인할 때 사용한다.
+    @Query("select m.name from Memo m where m.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    // 이름 Bloom filter 를 만들 때 (id, name) 만 id 순서대로 끊어 읽는다.
+    @Query("select m.id, m.name from Memo m where m.id > :id order by m.id")
+    List<Object[]> findNamesAfterId(@Param("id") Long id, Pageable pageable);
+
+    // 대량 삭제용 쿼리. 엔티티를 읽지 않고 delete / update 한 번으로 처리한다.
+    // 삭제 전에 카테고리별 메모 개수 카운터에서 뺄 개수를 구한다. [categoryId, count]
+    @Query("select m.category.id, count(m) from Memo m where m.id in :ids and m.category is not null group by m.category.id")
+    List<Object[]> countByCategoryIn(@Param("ids") Collection<Long> ids);
+
+    // 삭제 기록(tombstone)은 실제로 있는 메모에만 남긴다.
+    @Query("select m.id from Memo m where m.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Memo m where m.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select m.id from Memo m where m.category.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    boolean existsByCategoryId(Long categoryId);
+
+    @Modifying
+    @Query("delete from Memo m where m.category.id = :categoryId")
+    int deleteByCategoryId(@Param("categoryId") Long categoryId);
+
+    // 메모 응답에 category 가 들어가므로 version 을 올려서 ETag 가 바뀌게 한다.
+    @Modifying
+    @Query("update Memo m set m.category = null, m.version = m.version + 1 where m.category.id = :categoryId")
+    int clearCategory(@Param("categoryId") Long categoryId);
+
+    // 카테고리별 메모 개수 카운터를 맞춰볼 때만 쓴다. [categoryId, count]
+    @Query("select m.category.id, count(m) from Memo m where m.category is not null group by m.category.id")
+    List<Object[]> countByCategory();
+
+    // 목록 화면용 요약 조회. 크기 제한이 없는 content(TEXT) 컬럼은 읽지 않는다.
+    @Query(value = "select new com.example.demo.dto.MemoSummaryDTO(m.id, m.name, c.id, c.name) from Memo m left join m.category c",
+            countQuery = "select count(m) from Memo m")
+    Page<MemoSummaryDTO> findSummaries(Pageable pageable);
+
+    @Query("select new com.example.demo.dto.MemoSummaryDTO(m.id, m.name, c.id, c.name) from Memo m left join m.category c where m.id in :ids")
+    List<MemoSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 }
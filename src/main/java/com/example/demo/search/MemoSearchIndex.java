@@ -0,0 +1,367 @@
+package com.example.demo.search;
+
+import com.example.demo.entity.Memo;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 메모 name / content 에 대한 메모리 역색인(inverted index).
+// `LIKE '%keyword%'` 는 인덱스를 탈 수 없어 매번 테이블 전체를 읽기 때문에,
+// 단어를 2-gram 으로 쪼개서 gram -> (memoId -> 빈도) 형태로 들고 있다가 검색한다.
+// 2-gram 을 쓰는 이유는 "메모를" 처럼 조사가 붙은 한글 단어도 "메모" 로 찾을 수 있게 하기 위해서다.
+// 한 글자 검색어("m" 으로 "memo" 찾기)도 LIKE 와 같이 찾을 수 있도록 단어에 나온 글자(1-gram)도 같이 색인한다.
+//
+// 메모리: posting 은 boxing 없이 id 순서로 정렬한 배열에 담고, 본문은 앞에서부터 서로 다른 gram MAX_CONTENT_GRAMS 개까지만
+// 색인한다. 아주 긴 본문의 뒤쪽에만 나오는 단어는 검색되지 않을 수 있다. (제목은 모두 색인한다)
+// 한 글자 검색어는 거의 모든 메모가 후보라서 점수를 매기지 않고 id 순서로 필요한 페이지만 잘라서 돌려준다.
+@Component
+public class MemoSearchIndex {
+    // 제목에 나온 단어는 본문보다 가중치를 높게 준다.
+    private static final int NAME_WEIGHT = 3;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    static final int MAX_CONTENT_GRAMS = 10_000;
+
+    private final MemoRepository memoRepository;
+    private final ShardRouter shardRouter;
+
+    // 검색은 항상 current 를 읽는다. rebuild 는 새 Postings 를 다 만든 뒤에 바꿔 끼운다.
+    private volatile Postings current = new Postings();
+    // rebuild 중에 들어온 색인/삭제 (memoId -> gram 빈도, 삭제면 null). 바꿔 끼우기 전에 새 Postings 에 다시 적용한다.
+    // rebuild 중이 아니면 null 이다. lock 의 write lock 을 잡고 읽고 쓴다.
+    private Map<Long, Map<String, Integer>> changedDuringRebuild;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 한 gram 의 posting. memoId 와 가중치가 반영된 빈도를 id 순서로 정렬된 배열에 담는다. (메모 하나에 12 바이트)
+    // 새 메모는 id 가 가장 크므로 보통 끝에 붙는다.
+    private static final class Posting {
+        final String gram;
+        long[] ids = new long[2];
+        int[] frequencies = new int[2];
+        int size;
+
+        Posting(String gram) {
+            this.gram = gram;
+        }
+
+        int indexOf(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        // 없으면 0
+        int frequency(long id) {
+            int index = indexOf(id);
+            return index < 0 ? 0 : frequencies[index];
+        }
+
+        void put(long id, int frequency) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                int capacity = size + (size >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            ids[index] = id;
+            frequencies[index] = frequency;
+            size++;
+        }
+
+        void remove(long id) {
+            int index = indexOf(id);
+            if (index < 0)
+                return;
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+            // 많이 지워졌으면 배열을 줄인다.
+            if (ids.length > 16 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+        }
+    }
+
+    // 쓰기는 lock 의 write lock, 읽기는 read lock 을 잡고 하므로 일반 HashMap 을 쓴다.
+    // (rebuild 중인 새 Postings 는 rebuild 하는 스레드만 쓰고, 바꿔 끼운 뒤에는 lock 을 잡고 쓴다)
+    private static final class Postings {
+        // gram -> posting
+        final Map<String, Posting> postings = new HashMap<>();
+        // memoId -> 해당 메모가 들어 있는 posting 들 (수정/삭제 시 기존 posting 에서 지우기 위해 필요)
+        final Map<Long, Posting[]> documents = new HashMap<>();
+
+        void put(Long id, Map<String, Integer> frequencies) {
+            remove(id);
+            Posting[] grams = new Posting[frequencies.size()];
+            int count = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Posting posting = postings.computeIfAbsent(entry.getKey(), Posting::new);
+                posting.put(id, entry.getValue());
+                grams[count++] = posting;
+            }
+            documents.put(id, grams);
+        }
+
+        void remove(Long id) {
+            Posting[] grams = documents.remove(id);
+            if (grams == null)
+                return;
+            for (Posting posting : grams) {
+                posting.remove(id);
+                if (posting.size == 0)
+                    postings.remove(posting.gram);
+            }
+        }
+    }
+
+    public MemoSearchIndex(MemoRepository memoRepository, ShardRouter shardRouter) {
+        this.memoRepository = memoRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    // 검색 결과. ids 는 점수 순으로 정렬된 요청 페이지의 메모 id, total 은 전체 매칭 수
+    public record Hits(List<Long> ids, long total) {
+    }
+
+    public void index(Memo memo) {
+        Map<String, Integer> frequencies = frequencies(memo);
+        lock.writeLock().lock();
+        try {
+            current.put(memo.getId(), frequencies);
+            if (changedDuringRebuild != null)
+                changedDuringRebuild.put(memo.getId(), frequencies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            current.remove(id);
+            if (changedDuringRebuild != null)
+                changedDuringRebuild.put(id, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, Integer> frequencies(Memo memo) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String gram : tokenize(memo.getName(), true))
+            frequencies.merge(gram, NAME_WEIGHT, Integer::sum);
+        // 본문은 서로 다른 gram MAX_CONTENT_GRAMS 개까지만 넣는다. 이미 넣은 gram 의 빈도는 계속 센다.
+        int limit = frequencies.size() + MAX_CONTENT_GRAMS;
+        for (String gram : tokenize(memo.getContent(), true)) {
+            if (frequencies.size() < limit || frequencies.containsKey(gram))
+                frequencies.merge(gram, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    // 키워드의 모든 gram 을 포함하는 메모만 매칭(AND)하고 tf-idf 합으로 정렬한다.
+    // keyword 에서 gram 이 하나도 나오지 않으면 null 을 리턴해서 호출하는 쪽이 전체 조회를 하게 한다.
+    // 한 글자 gram 만으로 된 검색어는 점수를 매기지 않고 id 순서로 돌려준다.
+    public Hits search(String keyword, Pageable pageable) {
+        List<String> grams = new ArrayList<>(new LinkedHashSet<>(tokenize(keyword, false)));
+        if (grams.isEmpty())
+            return null;
+
+        lock.readLock().lock();
+        try {
+            Postings postings = current;
+            List<Posting> lists = postingsOf(postings, grams);
+            if (lists == null)
+                return new Hits(List.of(), 0);
+            if (grams.stream().allMatch(gram -> gram.length() == 1)) {
+                List<Long> ids = new ArrayList<>(pageable.getPageSize());
+                long total = intersect(lists, pageable.getOffset(), pageable.getPageSize(), ids);
+                return new Hits(ids, total);
+            }
+
+            double documentCount = Math.max(1, postings.documents.size());
+            double[] idf = new double[lists.size()];
+            for (int i = 0; i < lists.size(); i++)
+                idf[i] = Math.log(1 + documentCount / lists.get(i).size);
+
+            int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+            // 점수가 낮은 것이 먼저 나오는 min-heap 으로 상위 limit 개만 유지한다.
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(
+                    Map.Entry.<Long, Double>comparingByValue().thenComparing(Map.Entry::getKey, Comparator.reverseOrder()));
+            long total = 0;
+            Posting first = lists.get(0);
+            candidates:
+            for (int k = 0; k < first.size; k++) {
+                long id = first.ids[k];
+                double score = first.frequencies[k] * idf[0];
+                for (int i = 1; i < lists.size(); i++) {
+                    int frequency = lists.get(i).frequency(id);
+                    if (frequency == 0)
+                        continue candidates;
+                    score += frequency * idf[i];
+                }
+                total++;
+                top.offer(Map.entry(id, score));
+                if (top.size() > limit)
+                    top.poll();
+            }
+
+            List<Long> ranked = new ArrayList<>(top.size());
+            while (!top.isEmpty())
+                ranked.add(top.poll().getKey());
+            Collections.reverse(ranked);
+            int from = (int) Math.min(pageable.getOffset(), ranked.size());
+            return new Hits(ranked.subList(from, ranked.size()), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // search 와 같이 키워드의 모든 gram 을 포함하는 메모의 id 를 점수 없이 모두 id 순서로 돌려준다. (export)
+    // keyword 에서 gram 이 하나도 나오지 않으면 null 을 리턴한다.
+    public List<Long> matches(String keyword) {
+        List<String> grams = new ArrayList<>(new LinkedHashSet<>(tokenize(keyword, false)));
+        if (grams.isEmpty())
+            return null;
+
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Posting> lists = postingsOf(current, grams);
+            if (lists != null)
+                intersect(lists, 0, Long.MAX_VALUE, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    // 모든 posting 에 있는 id 를 id 순서로 돌면서 from 번째부터 max 개까지 ids 에 담고, 전체 개수를 리턴한다.
+    // posting 이 하나면 교집합을 구할 필요가 없으므로 필요한 구간만 복사한다.
+    private static long intersect(List<Posting> lists, long from, long max, List<Long> ids) {
+        Posting first = lists.get(0);
+        if (lists.size() == 1) {
+            for (long k = from; k < first.size && k - from < max; k++)
+                ids.add(first.ids[(int) k]);
+            return first.size;
+        }
+        long total = 0;
+        candidates:
+        for (int k = 0; k < first.size; k++) {
+            long id = first.ids[k];
+            for (int i = 1; i < lists.size(); i++) {
+                if (lists.get(i).indexOf(id) < 0)
+                    continue candidates;
+            }
+            if (total >= from && total - from < max)
+                ids.add(id);
+            total++;
+        }
+        return total;
+    }
+
+    // gram 마다의 posting 을 짧은 것부터 돌려준다. 없는 gram 이 있으면 매칭되는 메모가 없으므로 null 이다.
+    // 가장 짧은 posting 부터 교집합을 구해야 비교 횟수가 적다.
+    private static List<Posting> postingsOf(Postings postings, List<String> grams) {
+        List<Posting> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Posting posting = postings.postings.get(gram);
+            if (posting == null)
+                return null;
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(posting -> posting.size));
+        return lists;
+    }
+
+    // 서버가 뜰 때 DB 의 메모 전체로 색인을 다시 만든다. id 기준으로 끊어 읽어서 OFFSET 을 쓰지 않는다.
+    // 색인은 모든 shard 의 메모를 하나로 들고 있다.
+    // 새 색인을 따로 만든 뒤 한 번에 바꿔 끼우므로, 만드는 동안에도 검색은 이전 색인으로 동작한다.
+    // 그 사이에 들어온 색인/삭제는 DB 에서 읽은 값보다 새 값이므로 바꿔 끼우기 전에 다시 적용한다.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Postings rebuilt = new Postings();
+        boolean completed = false;
+        try {
+            Pageable batch = PageRequest.of(0, REBUILD_BATCH_SIZE, Sort.by("id"));
+            shardRouter.forEachShard(shard -> {
+                Slice<Memo> slice = memoRepository.findByIdGreaterThan(0L, batch);
+                while (slice.hasContent()) {
+                    slice.forEach(memo -> rebuilt.put(memo.getId(), frequencies(memo)));
+                    if (!slice.hasNext())
+                        break;
+                    List<Memo> content = slice.getContent();
+                    slice = memoRepository.findByIdGreaterThan(content.get(content.size() - 1).getId(), batch);
+                }
+            });
+            completed = true;
+        } finally {
+            // 실패하면 이전 색인을 그대로 쓴다.
+            lock.writeLock().lock();
+            try {
+                if (completed) {
+                    changedDuringRebuild.forEach((id, frequencies) -> {
+                        if (frequencies == null)
+                            rebuilt.remove(id);
+                        else
+                            rebuilt.put(id, frequencies);
+                    });
+                    current = rebuilt;
+                }
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // 소문자로 바꾼 뒤 글자/숫자가 아닌 문자로 단어를 나누고, 각 단어를 2-gram 으로 만든다.
+    // 한 글자 단어는 그대로 쓴다. unigrams 가 true 면(색인할 때) 두 글자 이상인 단어의 글자도 하나씩 넣는다.
+    static List<String> tokenize(String text, boolean unigrams) {
+        if (text == null || text.isBlank())
+            return List.of();
+        List<String> grams = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start == 1) {
+                    grams.add(lower.substring(start, i));
+                } else {
+                    for (int j = start; j + 2 <= i; j++)
+                        grams.add(lower.substring(j, j + 2));
+                    if (unigrams) {
+                        for (int j = start; j < i; j++)
+                            grams.add(lower.substring(j, j + 1));
+                    }
+                }
+                start = -1;
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.search;
+
+import com.example.demo.dto.SuggestionDTO;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 메모 / 카테고리 이름 자동완성 (GET /suggest). DB 를 읽지 않고 메모리의 trie(NameTrie)에서 찾는다.
+// 점수는 최근에 만들거나 이름을 바꾼 것이 높다. 서버가 뜰 때는 id 순서(먼저 만든 것이 낮은 점수)로 채운다.
+// 메모/카테고리를 쓰는 곳에서 put / remove 를 호출해서 바로 반영한다.
+@Component
+public class NameSuggester {
+    public static final String MEMO = "memo";
+    public static final String CATEGORY = "category";
+
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    private final MemoRepository memoRepository;
+    private final CategoryRepository categoryRepository;
+    private final ShardRouter shardRouter;
+
+    private final NameTrie memos = new NameTrie();
+    private final NameTrie categories = new NameTrie();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 넣을 때마다 1씩 올라가는 점수
+    private long clock;
+    // rebuild 중에 지운 id (trie -> id). DB 에서 먼저 읽어 둔 행으로 지운 이름을 다시 넣지 않도록 putAll 이 건너뛴다.
+    // rebuild 중이 아니면 null 이다. lock 의 write lock 을 잡고 읽고 쓴다.
+    private Map<NameTrie, Set<Long>> removedDuringRebuild;
+
+    public NameSuggester(MemoRepository memoRepository, CategoryRepository categoryRepository, ShardRouter shardRouter) {
+        this.memoRepository = memoRepository;
+        this.categoryRepository = categoryRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    public void putMemo(Long id, String name) {
+        put(memos, id, name);
+    }
+
+    public void removeMemo(Long id) {
+        remove(memos, id);
+    }
+
+    public void putCategory(Long id, String name) {
+        put(categories, id, name);
+    }
+
+    public void removeCategory(Long id) {
+        remove(categories, id);
+    }
+
+    // type 이 null 이면 메모와 카테고리를 합쳐서 점수 순으로 limit 개를 준다.
+    public List<SuggestionDTO> suggest(String prefix, String type, int limit) {
+        List<Scored> scored = new ArrayList<>(limit * 2);
+        lock.readLock().lock();
+        try {
+            if (type == null || type.equals(MEMO))
+                memos.top(prefix, limit).forEach(entry -> scored.add(new Scored(MEMO, entry)));
+            if (type == null || type.equals(CATEGORY))
+                categories.top(prefix, limit).forEach(entry -> scored.add(new Scored(CATEGORY, entry)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scored.stream()
+                .sorted(Comparator.comparingLong((Scored s) -> s.entry().score()).reversed())
+                .limit(limit)
+                .map(s -> new SuggestionDTO(s.type(), s.entry().id(), s.entry().name()))
+                .toList();
+    }
+
+    private record Scored(String type, NameTrie.Entry entry) {
+    }
+
+    // 서버가 뜰 때 DB 의 이름으로 다시 채운다. id 기준으로 끊어 읽는다.
+    // 읽는 동안 들어온 put 은 이미 들어 있는 id 라서, remove 는 removedDuringRebuild 에 남아서 DB 에서 읽은 행보다 우선한다.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            memos.clear();
+            categories.clear();
+            removedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            putAll(categories, categoryRepository.findIdsAndNames());
+
+            PageRequest batch = PageRequest.of(0, REBUILD_BATCH_SIZE);
+            shardRouter.forEachShard(shard -> {
+                List<Object[]> rows = memoRepository.findNamesAfterId(0L, batch);
+                while (!rows.isEmpty()) {
+                    putAll(memos, rows);
+                    rows = memoRepository.findNamesAfterId((Long) rows.get(rows.size() - 1)[0], batch);
+                }
+            });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                removedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // [id, name] 행을 id 순서로 넣는다. 이미 들어 있는 id 는 그 사이 새로 쓰인 것이고,
+    // rebuild 중에 지운 id 는 이 행을 읽은 뒤에 지워졌을 수 있으므로 건너뛴다.
+    private void putAll(NameTrie trie, List<Object[]> rows) {
+        lock.writeLock().lock();
+        try {
+            Set<Long> removed = removedDuringRebuild == null ? Set.of() : removedDuringRebuild.getOrDefault(trie, Set.of());
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                if (!trie.contains(id) && !removed.contains(id))
+                    trie.put(id, (String) row[1], ++clock);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(NameTrie trie, Long id, String name) {
+        lock.writeLock().lock();
+        try {
+            trie.put(id, name, ++clock);
+            Set<Long> removed = removedDuringRebuild == null ? null : removedDuringRebuild.get(trie);
+            if (removed != null)
+                removed.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(NameTrie trie, Long id) {
+        lock.writeLock().lock();
+        try {
+            trie.remove(id);
+            if (removedDuringRebuild != null)
+                removedDuringRebuild.computeIfAbsent(trie, t -> new HashSet<>()).add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
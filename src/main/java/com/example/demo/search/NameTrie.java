@@ -0,0 +1,168 @@
+package com.example.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// 이름 prefix 자동완성용 trie. 이름은 소문자로 바꿔서 글자 단위로 넣는다.
+// 노드마다 자기 아래에 있는 이름 중 가장 높은 점수(best)를 들고 있어서, 상위 k 개는
+// best 가 큰 노드부터 펼쳐 보는 방식으로 찾는다. prefix 아래 이름이 많아도 k 개를 찾으면 멈춘다.
+// 자식은 정렬된 char[] 와 Node[] 로 들고 있어서 노드마다 Map 을 두는 것보다 메모리를 적게 쓴다.
+// thread-safe 하지 않다. (NameSuggester 가 lock 을 잡고 호출한다)
+final class NameTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Node root = new Node();
+    // id -> 들어 있는 이름. 수정/삭제할 때 예전 이름의 위치를 찾기 위해 필요하다.
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    record Entry(long id, String name, long score) {
+    }
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int size;
+        // 여기서 끝나는 이름. 대소문자만 다른 이름이 있을 수 있어서 배열이다.
+        Entry[] entries = NO_ENTRIES;
+        long best = Long.MIN_VALUE;
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0)
+                return children[index];
+            index = -index - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node child = new Node();
+            keys[index] = key;
+            children[index] = child;
+            size++;
+            return child;
+        }
+
+        void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index < 0)
+                return;
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(children, index + 1, children, index, size - index - 1);
+            children[--size] = null;
+        }
+
+        void updateBest() {
+            long best = Long.MIN_VALUE;
+            for (Entry entry : entries)
+                best = Math.max(best, entry.score());
+            for (int i = 0; i < size; i++)
+                best = Math.max(best, children[i].best);
+            this.best = best;
+        }
+    }
+
+    // 펼쳐 볼 노드 또는 결과로 낼 이름. 점수가 같으면 이름을 먼저 꺼낸다.
+    private record Candidate(long score, Node node, Entry entry) {
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingLong(Candidate::score).reversed()
+            .thenComparing(candidate -> candidate.entry() == null);
+
+    // 같은 id 가 있으면 예전 이름을 지우고 새 이름과 점수로 넣는다.
+    void put(long id, String name, long score) {
+        remove(id);
+        if (name == null || name.isEmpty())
+            return;
+        Entry entry = new Entry(id, name, score);
+        String key = normalize(name);
+        Node node = root;
+        node.best = Math.max(node.best, score);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            node.best = Math.max(node.best, score);
+        }
+        node.entries = Arrays.copyOf(node.entries, node.entries.length + 1);
+        node.entries[node.entries.length - 1] = entry;
+        entries.put(id, entry);
+    }
+
+    // 이름이 있던 경로의 best 를 아래에서부터 다시 계산하고, 비게 된 노드는 떼어낸다.
+    void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null)
+            return;
+        String key = normalize(entry.name());
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++)
+            path[i + 1] = path[i].child(key.charAt(i));
+
+        Node leaf = path[key.length()];
+        leaf.entries = Arrays.stream(leaf.entries).filter(e -> e.id() != id).toArray(Entry[]::new);
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].updateBest();
+            if (i > 0 && path[i].best == Long.MIN_VALUE)
+                path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        root.keys = NO_KEYS;
+        root.children = NO_CHILDREN;
+        root.size = 0;
+        root.entries = NO_ENTRIES;
+        root.best = Long.MIN_VALUE;
+    }
+
+    // prefix 로 시작하는 이름을 점수가 높은 순서로 limit 개까지 찾는다.
+    List<Entry> top(String prefix, int limit) {
+        String key = normalize(prefix);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++)
+            node = node.child(key.charAt(i));
+        if (node == null || node.best == Long.MIN_VALUE)
+            return List.of();
+
+        List<Entry> result = new ArrayList<>(limit);
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(BEST_FIRST);
+        queue.offer(new Candidate(node.best, node, null));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.entry() != null) {
+                result.add(candidate.entry());
+                continue;
+            }
+            Node current = candidate.node();
+            for (Entry entry : current.entries)
+                queue.offer(new Candidate(entry.score(), null, entry));
+            for (int i = 0; i < current.size; i++)
+                queue.offer(new Candidate(current.children[i].best, current.children[i], null));
+        }
+        return result;
+    }
+
+    boolean contains(long id) {
+        return entries.containsKey(id);
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
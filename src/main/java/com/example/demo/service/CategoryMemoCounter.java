@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CategoryMemoCount;
+import com.example.demo.repository.CategoryMemoCountRepository;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 카테고리별 메모 개수 카운터 (CategoryMemoCount).
+// increment 는 메모를 저장하는 트랜잭션 안에서만 호출해서 메모와 개수가 같이 커밋되거나 같이 롤백되게 한다.
+// 카운터를 거치지 않고 DB 를 바꾼 경우 등으로 어긋난 값은 reconcile 이 주기적으로 맞춘다.
+@Slf4j
+@Component
+public class CategoryMemoCounter {
+    private final CategoryMemoCountRepository countRepository;
+    private final CategoryRepository categoryRepository;
+    private final MemoRepository memoRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int stripes;
+
+    public CategoryMemoCounter(CategoryMemoCountRepository countRepository, CategoryRepository categoryRepository,
+                               MemoRepository memoRepository, ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                               @Value("${app.category-counter.stripes:8}") int stripes) {
+        this.countRepository = countRepository;
+        this.categoryRepository = categoryRepository;
+        this.memoRepository = memoRepository;
+        this.shardRouter = shardRouter;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.stripes = stripes;
+    }
+
+    // 카테고리가 만들어질 때 stripe 행을 미리 만들어 둔다.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void createStripes(Long categoryId) {
+        List<CategoryMemoCount> rows = new ArrayList<>(stripes);
+        for (int stripe = 0; stripe < stripes; stripe++)
+            rows.add(new CategoryMemoCount(categoryId, stripe));
+        countRepository.saveAll(rows);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteStripes(Long categoryId) {
+        countRepository.deleteByCategoryId(categoryId);
+    }
+
+    // stripe 는 임의로 골라서 같은 카테고리에 동시에 메모를 만드는 요청끼리 같은 행을 잠그지 않게 한다.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void increment(Long categoryId, long delta) {
+        if (categoryId == null || delta == 0)
+            return;
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        if (countRepository.increment(categoryId, stripe, delta) == 0)
+            log.debug("no counter row for category {} stripe {}, left for reconciliation", categoryId, stripe);
+    }
+
+    // 같은 스냅샷(REPEATABLE_READ)에서 실제 개수와 카운터 합을 읽고, 차이만큼 stripe 0 에 더한다.
+    // 스냅샷 이후의 생성/삭제는 메모와 카운터에 함께 반영되므로 차이를 더해도 맞는 값이 된다.
+    // 카운터는 메모와 같은 shard 에 있어서 shard 마다 따로 맞춘다.
+    @Scheduled(fixedDelayString = "${app.category-counter.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        shardRouter.forEachShard(this::reconcileShard);
+    }
+
+    private void reconcileShard(int shard) {
+        Map<Long, Long> actual = new HashMap<>();
+        Map<Long, Long> counted = new HashMap<>();
+        Map<Long, Set<Integer>> existing = new HashMap<>();
+        List<Long> categoryIds = snapshotTransaction.execute(status -> {
+            for (Object[] row : memoRepository.countByCategory())
+                actual.put((Long) row[0], (Long) row[1]);
+            for (Object[] row : countRepository.findAllStripes()) {
+                counted.merge((Long) row[0], (Long) row[2], Long::sum);
+                existing.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Integer) row[1]);
+            }
+            return categoryRepository.findAllIds();
+        });
+
+        writeTransaction.executeWithoutResult(status -> {
+            int repaired = 0;
+            for (Long categoryId : categoryIds) {
+                Set<Integer> present = existing.getOrDefault(categoryId, Set.of());
+                List<CategoryMemoCount> missing = new ArrayList<>();
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    if (!present.contains(stripe))
+                        missing.add(new CategoryMemoCount(categoryId, stripe));
+                }
+                countRepository.saveAll(missing);
+
+                long drift = actual.getOrDefault(categoryId, 0L) - counted.getOrDefault(categoryId, 0L);
+                if (drift != 0) {
+                    countRepository.flush();
+                    countRepository.increment(categoryId, 0, drift);
+                    repaired++;
+                }
+            }
+            int orphans = countRepository.deleteOrphans();
+            if (repaired > 0 || orphans > 0)
+                log.info("category memo counts reconciled on shard {}: {} categories repaired, {} orphan rows removed", shard, repaired, orphans);
+        });
+    }
+}
@@ -7,18 +7,37 @@
 // Controller에 로직이 있으면 로직이 중복되기 때문에 Controller에서는 비즈니스 로직을 처리하지 않는다)
 package com.example.demo.service;
 
+import com.example.demo.cache.CategoryCache;
+import com.example.demo.cache.NameFilter;
+import com.example.demo.cache.ResponseCache;
 import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.CategoryDeletePolicy;
+import com.example.demo.dto.CategoryOverviewDTO;
+import com.example.demo.dto.Cursor;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DeleteResult;
 import com.example.demo.entity.Category;
 import com.example.demo.repository.CategoryRepository;
-import jakarta.transaction.Transactional;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.search.NameSuggester;
+import com.example.demo.sharding.ShardRouter;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 // @Service 는 서비스 컴포넌트를 만들때 사용한다. Service에서는 @Transactional 을 사용할 수 있다.
@@ -30,23 +49,46 @@ public class CategoryService {
     // CategoryRepository 는 우리가 생성을 안하였지만 Spring에서 Bean을 검색하여 DI 를 통해 주입해준다.
 
     private final CategoryRepository categoryRepository;
+    // id / name 으로 Category 를 찾을 때는 DB 대신 캐시를 먼저 본다.
+    private final CategoryCache categoryCache;
+    // 처음 보는 이름이면 중복 확인 조회를 건너뛰기 위한 Bloom filter
+    private final NameFilter nameFilter;
+    // 카테고리별 메모 개수 카운터
+    private final CategoryMemoCounter categoryMemoCounter;
+    // 카테고리를 삭제할 때 남아 있는 메모를 정리한다.
+    private final MemoService memoService;
+    private final MemoRepository memoRepository;
+    private final ResponseCache responseCache;
+    private final ChangeLogService changeLogService;
+    private final NameSuggester nameSuggester;
+    // 카테고리는 shard 0 에 저장하고 나머지 shard 에 복제한다. 메모가 어느 shard 에 있든 category join 과 외래키가 동작하게 하기 위해서다.
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
 
     //Create
     // @Transactional 은 Exception이 발생하면 데이터베이스를 롤백해주는 기능을 제공한다.
-    @Transactional
+    // 원본(shard 0)은 한 트랜잭션으로 저장하고, 커밋한 뒤에 다른 shard 로 복제한다.
     public Category createCategory(CategoryDTO categoryDTO){
         // Repository에서 데이터 가져오기
-        Optional<Category> findOne = categoryRepository.findByName(categoryDTO.getName());
+        Optional<Category> findOne = nameFilter.mightContainCategory(categoryDTO.getName())
+                ? categoryCache.findByName(categoryDTO.getName())
+                : Optional.empty();
         if(findOne.isPresent()){ //데이터가 이미 존재하면 Exception을 발생시키고 종료
             // Repository에서 가져온 데이터가 존재하면  ResponseStatusException 를 리턴해주는데
             // 이는 Controller에서 HTTP 에러 응답을 하게 하는 Exception이다, HTTP code와 메세지를 적으면된다.
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 이름입니다.");
         }
-        Category category = Category.builder().
-                name(categoryDTO.getName()).
-                build();
-        category = categoryRepository.save(category); // 아니면 category 생성하기
-//        category = categoryRepository.save(category); // 아니면 category 생성하기
+        Category category = shardRouter.writeOnShard(0, () -> {
+            Category created = Category.builder().
+                    name(categoryDTO.getName()).
+                    build();
+            created = saveCategory(created); // 아니면 category 생성하기
+//            created = categoryRepository.save(created); // 아니면 category 생성하기
+            categoryMemoCounter.createStripes(created.getId());
+            return created;
+        });
+        replicate(category);
+        categoryCache.put(category);
 
         return category;
     }
@@ -61,21 +103,69 @@ public class CategoryService {
     //없다면 Exception을 발생 시킨다.
     //
     //여기서 NOT_FOUND Exception을 발생시켰다.
+    // 캐시에 없을 때는 CategoryRepository.findById (Spring Data 기본 readOnly 트랜잭션)로 읽는다.
     public Category getCategoryById(Long id){
-        return categoryRepository.findById(id).orElseThrow(
+        return categoryCache.findById(id).orElseThrow(
                 () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "카테고리가 존재하지 않습니다."));
     }
 
     // Read all
+    @Transactional(readOnly = true)
     public List<Category> getCategoryAll(){
         return categoryRepository.findAll();
     }
 
     // delete
-    @Transactional
-    public Long deleteCategoryById(Long id){
-        categoryRepository.deleteById(id);
-        return id;
+    // 카테고리에 메모가 남아 있으면 policy 대로 처리한다. 메모는 한 건씩이 아니라 update / delete 한 번으로 처리한다.
+    // 메모는 모든 shard 에 있으므로 shard 마다 한 트랜잭션으로 메모와 카테고리 복제본을 정리하고, 원본(shard 0)은 마지막에 지운다.
+    // shard 사이에서는 원자적이지 않아서 중간에 실패하면 남은 shard 에 카테고리가 남는데, 같은 요청을 다시 보내면 마저 지워진다.
+    public DeleteResult deleteCategoryById(Long id, CategoryDeletePolicy policy){
+        if (categoryCache.findById(id).isEmpty())
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "카테고리가 존재하지 않습니다.");
+        if (policy == CategoryDeletePolicy.REJECT && shardRouter.scatter(() -> memoRepository.existsByCategoryId(id)).contains(true))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 있는 카테고리는 삭제할 수 없습니다.");
+
+        DeleteResult result = new DeleteResult(0, 0, 0);
+        for (int shard = shardRouter.shardCount() - 1; shard >= 0; shard--) {
+            boolean primary = shard == 0;
+            DeleteResult deleted = shardRouter.writeOnShard(shard, () -> {
+                DeleteResult removed = deleteCategoryOnShard(id, policy);
+                if (primary && removed.getCategories_deleted() == 0)
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "카테고리가 존재하지 않습니다.");
+                if (primary)
+                    changeLogService.recordCategory(id, true);
+                return removed;
+            });
+            result.setMemos_deleted(result.getMemos_deleted() + deleted.getMemos_deleted());
+            result.setMemos_detached(result.getMemos_detached() + deleted.getMemos_detached());
+            if (primary)
+                result.setCategories_deleted(deleted.getCategories_deleted());
+        }
+        categoryCache.evict(id);
+        responseCache.invalidate();
+        nameSuggester.removeCategory(id);
+        return result;
+    }
+
+    private DeleteResult deleteCategoryOnShard(Long id, CategoryDeletePolicy policy) {
+        int deleted = 0;
+        int detached = 0;
+        switch (policy) {
+            case REJECT -> {
+            }
+            case DETACH -> detached = memoService.detachMemosFromCategoryOnShard(id);
+            case DELETE -> deleted = memoService.deleteMemosByCategoryOnShard(id);
+        }
+
+        int categories;
+        try {
+            categories = categoryRepository.deleteCategoryById(id);
+        } catch (DataIntegrityViolationException e) {
+            // REJECT 확인 뒤에 다른 요청이 이 카테고리로 메모를 만든 경우 외래키 제약에 걸린다.
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 있는 카테고리는 삭제할 수 없습니다.");
+        }
+        categoryMemoCounter.deleteStripes(id);
+        return new DeleteResult(categories, deleted, detached);
     }
 
     // keyWord가 있다면 `findAll` 메서드를 호출하고 아니라면 findByNameContains메서드를 호출하였다.
@@ -83,19 +173,69 @@ public class CategoryService {
     //이는 나중에 실습을 들어가면 QueryDSL로 변경할 것이다.
     //
     //findAll 메서드는 데이터 전체를 가져오는 메서드로 사전에 만들어져있다. Pageable을 추가하면 페이지 요청에 맞게 데이터를 검색한다.
+    @Transactional(readOnly = true)
     public Page<Category> getCategories(Pageable pageable, String keyword) {
         if (keyword == null){
-            System.out.println("keyword is null");
             return categoryRepository.findAll(pageable);
         }
         return categoryRepository.findByNameContains(pageable, keyword);
     }
 
-    @Transactional
+    // 커서 페이징. `after` 가 없으면 첫 페이지를 준다. 정렬은 id 또는 name(오름차순)만 지원한다.
+    @Transactional(readOnly = true)
+    public CursorPage<Category> scrollCategories(String after, int size, String sort) {
+        PageRequest limit = CursorPage.limit(size);
+        List<Category> rows = switch (sort) {
+            case "id" -> after == null
+                    ? categoryRepository.findAllBy(limit.withSort(Sort.by("id")))
+                    : categoryRepository.findAfterId(Cursor.decode(after, sort).id(), limit);
+            case "name" -> {
+                if (after == null)
+                    yield categoryRepository.findAllBy(limit.withSort(Sort.by("name", "id")));
+                Cursor cursor = Cursor.decode(after, sort);
+                yield categoryRepository.findAfterName(cursor.key(), cursor.id(), limit);
+            }
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "지원하지 않는 정렬입니다.");
+        };
+        return CursorPage.of(rows, size, category -> new Cursor(sort, category.getId(), category.getName()));
+    }
+
+    // 카테고리마다 메모 개수를 붙인 목록. 메모 개수와 상관없이 카테고리 수만큼만 읽는다.
+    // 메모 개수 카운터는 메모가 있는 shard 마다 따로 있어서 shard 별 개수를 더한다.
+    public List<CategoryOverviewDTO> getOverview() {
+        List<List<CategoryOverviewDTO>> shards = shardRouter.scatter(categoryRepository::findOverview);
+        List<CategoryOverviewDTO> overview = shards.get(0);
+        if (shards.size() > 1) {
+            Map<Long, Long> counts = new HashMap<>();
+            for (List<CategoryOverviewDTO> shard : shards)
+                shard.forEach(row -> counts.merge(row.getId(), row.getMemo_count(), Long::sum));
+            overview.forEach(row -> row.setMemo_count(counts.get(row.getId())));
+        }
+        return overview;
+    }
+
+    // 목록 ETag 용 값. 카테고리를 쓰면 남는 변경 기록의 seq 로 만든다. (ChangeLogService.getListVersion)
+    public String getListVersion() {
+        return changeLogService.getListVersion();
+    }
+
     public Category modifyCategories(CategoryDTO categoryDTO) {
+        return modifyCategories(categoryDTO, null);
+    }
+
+    // expectedVersion 은 If-Match 로 받은 version 이다. 그 사이에 다른 요청이 수정했으면 412 로 거절한다.
+    public Category modifyCategories(CategoryDTO categoryDTO, Long expectedVersion) {
         if(categoryDTO.getName() == null || categoryDTO.equals(""))
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "비어있음");
+        Category category = shardRouter.writeOnShard(0, () -> modifyPrimary(categoryDTO, expectedVersion));
+        replicate(category);
+        categoryCache.evict(category.getId());
+        return category;
+    }
+
+    private Category modifyPrimary(CategoryDTO categoryDTO, Long expectedVersion) {
         // Repository에서 데이터 가져오기
+        // 수정할 때는 캐시에 있는 객체가 아니라 영속 상태의 엔티티가 필요해서 DB 에서 읽는다.
         Optional<Category> findOne = categoryRepository.findById(categoryDTO.getId());
         if(!findOne.isPresent()){ //데이터가 이미 존재하면 Exception을 발생시키고 종료
             // Repository에서 가져온 데이터가 존재하면  ResponseStatusException 를 리턴해주는데
@@ -103,11 +243,52 @@ public class CategoryService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "카테고리가 존재하지 않습니다.");
         }
 
-        Category category = Category.builder()
-                .id(categoryDTO.getId())
-                .name(categoryDTO.getName())
-                .build();
+        Category category = findOne.get();
+        if (expectedVersion != null && !expectedVersion.equals(category.getVersion()))
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "카테고리가 변경되었습니다.");
+        category.changeName(categoryDTO.getName());
+
+        return saveCategory(category);
+    }
+
+    // shard 0 의 카테고리를 나머지 shard 에 쓴다. 있으면 이름과 version 을 바꾸고 없으면 같은 id 로 만든다.
+    private void replicate(Category category) {
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++)
+            shardRouter.writeOnShard(shard, () -> upsertReplica(category));
+    }
 
-        return categoryRepository.save(category);
+    private Void upsertReplica(Category category) {
+        if (jdbcTemplate.update("update category set name = ?, version = ? where id = ?",
+                category.getName(), category.getVersion(), category.getId()) == 0) {
+            jdbcTemplate.update("insert into category (id, name, version) values (?, ?, ?)",
+                    category.getId(), category.getName(), category.getVersion());
+            categoryMemoCounter.createStripes(category.getId());
+        }
+        return null;
+    }
+
+    // 복제 중에 실패해서 어긋난 복제본을 주기적으로 원본에 맞춘다. (삭제는 deleteCategoryById 를 다시 호출해야 맞춰진다)
+    @Scheduled(fixedDelayString = "${app.sharding.category-sync-interval-ms:60000}")
+    public void syncReplicas() {
+        if (shardRouter.shardCount() == 1)
+            return;
+        shardRouter.readOnShard(0, categoryRepository::findAll).forEach(this::replicate);
+    }
+
+    // 동시에 같은 이름으로 저장하면 name 의 unique 제약에 걸린다. 이때도 중복 확인과 같은 400 으로 응답한다.
+    // 같은 카테고리를 동시에 수정해서 version 이 맞지 않으면 412 로 응답한다.
+    private Category saveCategory(Category category) {
+        try {
+            category = categoryRepository.saveAndFlush(category);
+        } catch (DataIntegrityViolationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 이름입니다.");
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "카테고리가 변경되었습니다.");
+        }
+        nameFilter.addCategory(category.getName());
+        responseCache.invalidate();
+        changeLogService.recordCategory(category.getId(), false);
+        nameSuggester.putCategory(category.getId(), category.getName());
+        return category;
     }
 }
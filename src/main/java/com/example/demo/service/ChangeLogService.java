@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChangeDTO;
+import com.example.demo.dto.ChangePage;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.ChangeLog;
+import com.example.demo.entity.ChangeLogFloor;
+import com.example.demo.entity.Memo;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ChangeLogFloorRepository;
+import com.example.demo.repository.ChangeLogRepository;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.sharding.IdGenerator;
+import com.example.demo.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// 변경 기록(ChangeLog). 클라이언트가 목록 전체를 다시 받지 않고 마지막으로 받은 seq 이후의 변경만 받게 한다.
+// 메모/카테고리를 쓰는 트랜잭션 안에서 record 를 호출해서 변경과 기록이 같이 커밋되거나 같이 롤백되게 한다.
+//
+// seq 는 insert 할 때 IdGenerator 로 만든 시간 순서의 번호라서 커밋 순서와는 다를 수 있다. 늦게 커밋된 작은 seq 를
+// 건너뛰지 않도록 끝나지 않은 기록 트랜잭션이 없는 seq(ChangeLogWatermark) 까지만 내려준다.
+// 변경 기록은 바뀐 메모와 같은 shard 에 남기고(카테고리는 shard 0), 읽을 때 모든 shard 에서 읽어 seq 순서로 합친다.
+@Slf4j
+@Service
+public class ChangeLogService {
+    private static final String INSERT_SQL = "insert into change_log (seq, entity_type, entity_id, deleted, changed_at) values (?, ?, ?, ?, ?)";
+
+    private final ChangeLogRepository changeLogRepository;
+    private final ChangeLogFloorRepository floorRepository;
+    private final MemoRepository memoRepository;
+    private final CategoryRepository categoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final IdGenerator idGenerator;
+    private final ChangeLogWatermark watermark;
+    private final Duration settle;
+    private final Duration tombstoneRetention;
+
+    public ChangeLogService(ChangeLogRepository changeLogRepository, ChangeLogFloorRepository floorRepository,
+                            MemoRepository memoRepository, CategoryRepository categoryRepository, JdbcTemplate jdbcTemplate,
+                            ShardRouter shardRouter, IdGenerator idGenerator, ChangeLogWatermark watermark,
+                            @Value("${app.changes.settle-ms:2000}") long settleMs,
+                            @Value("${app.changes.tombstone-retention-days:30}") long tombstoneRetentionDays) {
+        this.changeLogRepository = changeLogRepository;
+        this.floorRepository = floorRepository;
+        this.memoRepository = memoRepository;
+        this.categoryRepository = categoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.idGenerator = idGenerator;
+        this.watermark = watermark;
+        this.settle = Duration.ofMillis(settleMs);
+        this.tombstoneRetention = Duration.ofDays(tombstoneRetentionDays);
+    }
+
+    @Transactional
+    public void recordMemos(Collection<Long> ids, boolean deleted) {
+        record(ChangeLog.Type.MEMO, ids, deleted);
+    }
+
+    @Transactional
+    public void recordCategory(Long id, boolean deleted) {
+        record(ChangeLog.Type.CATEGORY, List.of(id), deleted);
+    }
+
+    private void record(ChangeLog.Type type, Collection<Long> ids, boolean deleted) {
+        if (ids.isEmpty())
+            return;
+        watermark.enlist();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, ids, ids.size(), (ps, id) -> {
+            ps.setLong(1, idGenerator.nextId());
+            ps.setString(2, type.name());
+            ps.setLong(3, id);
+            ps.setBoolean(4, deleted);
+            ps.setTimestamp(5, now);
+        });
+    }
+
+    // since 다음 변경을 size 개까지 읽고, 생성/수정된 메모와 카테고리는 id 묶음으로 한 번씩 조회해서 붙인다.
+    // since 가 0 이면 처음부터(살아 있는 메모/카테고리 전체) 받는다. 0 이 아니고 정리된 tombstone 보다 작으면
+    // 삭제를 놓쳤을 수 있으므로 410 으로 응답하고, 클라이언트는 since=0 부터 다시 받는다.
+    public ChangePage getChanges(long since, int size) {
+        checkSince(since);
+        return readChanges(since, size);
+    }
+
+    public void checkSince(long since) {
+        long floor = shardRouter.scatter(() -> floorRepository.findById(ChangeLogFloor.ID).map(ChangeLogFloor::getPurgedThrough).orElse(0L))
+                .stream().mapToLong(Long::longValue).max().orElse(0);
+        if (since > 0 && since < floor)
+            throw new ResponseStatusException(HttpStatus.GONE, "변경 기록이 정리되었습니다. since=0 부터 다시 받아야 합니다.");
+    }
+
+    // 정리 여부를 확인하지 않고 읽는다. (ChangeStream 이 이미 받은 seq 다음을 이어서 읽을 때 쓴다)
+    // shard 마다 since 다음 (size + 1) 개를 읽어서 seq 순서로 합친 뒤 앞에서부터 자른다.
+    public ChangePage readChanges(long since, int size) {
+        long through = watermark.current();
+        List<ChangeLog> rows = new ArrayList<>();
+        shardRouter.scatter(() -> changeLogRepository.findAfter(since, through, CursorPage.limit(size))).forEach(rows::addAll);
+        rows.sort(Comparator.comparing(ChangeLog::getSeq));
+        boolean hasMore = rows.size() > size;
+        if (hasMore)
+            rows = rows.subList(0, size);
+
+        Map<Long, Memo> memos = shardRouter.gather(idsOf(rows, ChangeLog.Type.MEMO), memoRepository::findAllById).stream()
+                .collect(Collectors.toMap(Memo::getId, Function.identity()));
+        List<Long> categoryIds = idsOf(rows, ChangeLog.Type.CATEGORY);
+        Map<Long, Category> categories = shardRouter.readOnShard(0, () -> categoryRepository.findAllById(categoryIds)).stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+
+        List<ChangeDTO> changes = new ArrayList<>(rows.size());
+        for (ChangeLog row : rows) {
+            Object data = row.isDeleted() ? null
+                    : row.getEntityType() == ChangeLog.Type.MEMO ? memos.get(row.getEntityId()) : categories.get(row.getEntityId());
+            changes.add(new ChangeDTO(row.getSeq(), row.getEntityType().name().toLowerCase(), row.getEntityId(), row.isDeleted(), data));
+        }
+        long next = rows.isEmpty() ? since : rows.get(rows.size() - 1).getSeq();
+        return new ChangePage(changes, next, hasMore);
+    }
+
+    // 지금 내려줄 수 있는 마지막 seq. 이전 변경 없이 지금부터 받기 시작할 때 쓴다.
+    public long getLastSeq() {
+        long through = watermark.current();
+        return shardRouter.scatter(() -> changeLogRepository.findLastSeq(through)).stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    // 목록 ETag 용 값. 메모/카테고리를 쓰면 같은 트랜잭션에서 기록이 남으므로 커밋되면 바뀌고, DB 에서 읽으므로 모든 서버가 같은 값을 본다.
+    // 가장 큰 seq 는 커밋되자마자 바뀐다. 먼저 만든 작은 seq 가 늦게 커밋되면 가장 큰 seq 는 그대로이므로
+    // watermark 아래의 마지막 seq 도 붙인다. (watermark 가 그 seq 를 지나면 바뀐다) 둘 다 seq 인덱스만 읽는다.
+    public String getListVersion() {
+        long through = watermark.current();
+        long last = 0;
+        long max = 0;
+        for (long[] seqs : shardRouter.scatter(() -> new long[]{changeLogRepository.findLastSeq(through), changeLogRepository.findMaxSeq()})) {
+            last = Math.max(last, seqs[0]);
+            max = Math.max(max, seqs[1]);
+        }
+        return Long.toString(last, 36) + "." + Long.toString(max, 36);
+    }
+
+    // 같은 대상에 더 최근 변경이 있는 행을 지우고, tombstone-retention-days 가 지난 tombstone 을 지운다.
+    // 생성/수정 행은 대상마다 최근 한 행만 남으므로 기록 크기는 (살아 있는 메모/카테고리 수 + 최근 삭제 수)를 넘지 않는다.
+    // shard 마다 한 트랜잭션으로 정리하고, 정리된 위치(floor)도 shard 마다 남긴다.
+    @Scheduled(fixedDelayString = "${app.changes.compact-interval-ms:3600000}")
+    public void compact() {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++)
+            shardRouter.writeOnShard(shard, this::compactShard);
+    }
+
+    private Void compactShard() {
+        Instant now = Instant.now();
+        int superseded = changeLogRepository.deleteSuperseded(now.minus(settle));
+        int tombstones = 0;
+        Long purge = changeLogRepository.findLastTombstoneSeq(now.minus(tombstoneRetention));
+        if (purge != null) {
+            ChangeLogFloor floor = floorRepository.findById(ChangeLogFloor.ID).orElseGet(() -> new ChangeLogFloor(0));
+            floor.raise(purge);
+            floorRepository.save(floor);
+            tombstones = changeLogRepository.deleteTombstonesThrough(purge);
+        }
+        if (superseded > 0 || tombstones > 0)
+            log.info("change log compacted: {} superseded rows, {} tombstones removed", superseded, tombstones);
+        return null;
+    }
+
+    private static List<Long> idsOf(List<ChangeLog> rows, ChangeLog.Type type) {
+        return rows.stream()
+                .filter(row -> row.getEntityType() == type && !row.isDeleted())
+                .map(ChangeLog::getEntityId)
+                .distinct()
+                .toList();
+    }
+}
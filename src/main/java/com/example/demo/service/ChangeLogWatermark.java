@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import com.example.demo.sharding.IdGenerator;
+import com.example.demo.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// 변경 기록을 어디까지 내려줘도 되는지(watermark) 정한다.
+// seq 는 기록할 때 만든 번호라서 커밋 순서와 다르다. 오래 걸리는 트랜잭션이 나중에 작은 seq 를 커밋하면, 이미 그보다
+// 큰 seq 까지 받아 간 클라이언트는 그 변경(삭제 포함)을 영영 받지 못한다. 그래서 아직 끝나지 않은 기록 트랜잭션이
+// 만들 수 있는 가장 작은 seq 보다 작은 seq 까지만 내려준다.
+//
+// 서버마다 기록을 시작할 때 그 시각 이후에 만들어질 seq 의 하한을 in-flight 에 넣고, 트랜잭션이 끝나면 뺀다.
+// 이 서버의 안전한 seq 는 in-flight 중 가장 작은 값 - 1 (없으면 지금 시각의 하한 - 1) 이고, interval-ms 마다
+// shard 0 의 change_log_writer 에 남긴다. 읽을 때는 살아 있는(ttl-ms 안에 남긴) 서버들의 값 중 가장 작은 값을 쓴다.
+// 내려가거나 ttl-ms 보다 오래 멈춘 서버의 값은 무시한다. (내려간 서버의 끝나지 않은 트랜잭션은 롤백된다)
+@Slf4j
+@Component
+// ddl-auto / Flyway 가 change_log_writer 를 만든 뒤에 처음 값을 남긴다.
+@DependsOn("entityManagerFactory")
+public class ChangeLogWatermark {
+    private final IdGenerator idGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final Duration ttl;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    // 끝나지 않은 기록 트랜잭션의 seq 하한 -> 개수
+    private final ConcurrentSkipListMap<Long, Integer> inFlight = new ConcurrentSkipListMap<>();
+
+    public ChangeLogWatermark(IdGenerator idGenerator, JdbcTemplate jdbcTemplate, ShardRouter shardRouter,
+                              @Value("${app.changes.watermark-ttl-ms:10000}") long ttlMs) {
+        this.idGenerator = idGenerator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.ttl = Duration.ofMillis(ttlMs);
+        publish();
+    }
+
+    // seq 를 만들기 전에 호출한다. 현재 트랜잭션이 끝나면(커밋이든 롤백이든) in-flight 에서 뺀다.
+    public void enlist() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            throw new IllegalStateException("change log must be recorded inside a transaction");
+        long low = idGenerator.lowestNextId();
+        inFlight.merge(low, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                inFlight.computeIfPresent(low, (key, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    // 이 seq 이하의 변경 기록은 다시 생기지 않는다.
+    public long current() {
+        long local = localSafeSeq();
+        Long fleet = shardRouter.readOnShard(0, () -> jdbcTemplate.queryForObject(
+                "select min(safe_seq) from change_log_writer where expires_at > ?", Long.class, Timestamp.from(Instant.now())));
+        return fleet == null ? local : Math.min(fleet, local);
+    }
+
+    // 하한을 먼저 구하고 in-flight 를 본다. 그 사이에 시작한 기록은 이 하한 이후에 seq 를 만든다.
+    private long localSafeSeq() {
+        long floor = idGenerator.lowestNextId();
+        Long oldest = inFlight.isEmpty() ? null : inFlight.firstKey();
+        return (oldest == null ? floor : Math.min(floor, oldest)) - 1;
+    }
+
+    @Scheduled(fixedDelayString = "${app.changes.watermark-interval-ms:200}")
+    public void publish() {
+        long safeSeq = localSafeSeq();
+        Instant now = Instant.now();
+        Timestamp expiresAt = Timestamp.from(now.plus(ttl));
+        shardRouter.writeOnShard(0, () -> {
+            int updated = jdbcTemplate.update("update change_log_writer set safe_seq = ?, expires_at = ? where owner = ?",
+                    safeSeq, expiresAt, owner);
+            if (updated == 0)
+                jdbcTemplate.update("insert into change_log_writer (owner, safe_seq, expires_at) values (?, ?, ?)",
+                        owner, safeSeq, expiresAt);
+            // 내려간 서버가 남긴 값은 지운다.
+            jdbcTemplate.update("delete from change_log_writer where expires_at < ?", Timestamp.from(now.minus(ttl)));
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void release() {
+        try {
+            shardRouter.writeOnShard(0, () -> jdbcTemplate.update("delete from change_log_writer where owner = ?", owner));
+        } catch (RuntimeException e) {
+            log.warn("failed to remove change log watermark: {}", e.getMessage());
+        }
+    }
+}
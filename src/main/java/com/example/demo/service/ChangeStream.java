@@ -0,0 +1,198 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChangeDTO;
+import com.example.demo.dto.ChangePage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 변경 기록을 Server-Sent Events 로 보낸다. (GET /changes/stream)
+// poll-interval-ms 마다 구독자마다 받은 마지막 seq 다음 변경을 읽어서 보낸다. 같은 위치에 있는 구독자들(보통 모두 따라잡은
+// 구독자)은 한 번 읽은 결과를 같이 쓴다. 이벤트 id 가 seq 라서 연결이 끊기면 브라우저가 Last-Event-ID 로 이어서 받는다.
+//
+// 보내는 것은 poll 하는 스레드가 아니라 구독자마다 따로 실행되는 작업이 한다. 느린 구독자는 자기 작업만 늦어지고,
+// 이전 작업이 끝나지 않은 구독자는 그 회차를 건너뛴다. since 부터 따라잡는 구독자도 batch-size 만큼씩 읽어서 보내므로
+// 메모리에는 한 번에 한 batch 만 들고 있고, 응답이 시작된 뒤에만 보낸다. (시작 전에 보낸 이벤트는 Spring 이 모아 둔다)
+@Slf4j
+@Component
+public class ChangeStream {
+    private final ChangeLogService changeLogService;
+    private final long timeoutMs;
+    private final int batchSize;
+    private final long heartbeatMs;
+    private final ExecutorService senders;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private static final class Subscriber {
+        final StreamEmitter emitter;
+        final AtomicBoolean busy = new AtomicBoolean();
+        // 받은 마지막 seq. 보내는 작업 하나만 바꾼다.
+        volatile long position;
+        volatile long lastSentAt = System.currentTimeMillis();
+
+        Subscriber(StreamEmitter emitter, long position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+    }
+
+    // 응답 header 를 쓰기 시작하면(핸들러가 emitter 를 돌려준 뒤) ready 가 된다.
+    private static final class StreamEmitter extends SseEmitter {
+        volatile boolean ready;
+
+        StreamEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            ready = true;
+        }
+    }
+
+    public ChangeStream(ChangeLogService changeLogService,
+                        @Value("${app.changes.stream-timeout-ms:1800000}") long timeoutMs,
+                        @Value("${app.changes.batch-size:500}") int batchSize,
+                        @Value("${app.changes.heartbeat-ms:15000}") long heartbeatMs,
+                        @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this.changeLogService = changeLogService;
+        this.timeoutMs = timeoutMs;
+        this.batchSize = batchSize;
+        this.heartbeatMs = heartbeatMs;
+        if (virtualThreads) {
+            this.senders = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            this.senders = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "change-stream-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // since 가 있으면 그 다음 변경부터, 없으면 지금부터의 변경을 보낸다. 여기서는 구독만 하고 보내는 것은 poll 에서 한다.
+    public SseEmitter subscribe(Long since) {
+        if (since != null)
+            changeLogService.checkSince(since);
+        StreamEmitter emitter = new StreamEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, since == null ? changeLogService.getLastSeq() : since);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.changes.poll-interval-ms:1000}")
+    public void poll() {
+        if (subscribers.isEmpty())
+            return;
+        // 이번 회차에 위치별로 읽은 첫 페이지. 같은 위치의 구독자는 한 번만 읽는다.
+        Map<Long, CompletableFuture<ChangePage>> pages = new ConcurrentHashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.emitter.ready || !subscriber.busy.compareAndSet(false, true))
+                continue;
+            try {
+                senders.execute(() -> {
+                    try {
+                        pump(subscriber, pages);
+                    } finally {
+                        subscriber.busy.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                subscriber.busy.set(false);
+                throw e;
+            }
+        }
+    }
+
+    // 구독자의 위치부터 끝까지 batch-size 만큼씩 읽어서 보낸다. 보낼 것이 없으면 heartbeat-ms 마다 빈 주석을 보낸다.
+    private void pump(Subscriber subscriber, Map<Long, CompletableFuture<ChangePage>> pages) {
+        try {
+            ChangePage page = shared(pages, subscriber.position);
+            while (true) {
+                if (!page.getChanges().isEmpty()) {
+                    if (!send(subscriber.emitter, page.getChanges(), page.getNext())) {
+                        subscribers.remove(subscriber);
+                        return;
+                    }
+                    subscriber.lastSentAt = System.currentTimeMillis();
+                }
+                subscriber.position = page.getNext();
+                if (!page.isHas_more())
+                    break;
+                page = changeLogService.readChanges(subscriber.position, batchSize);
+            }
+            if (System.currentTimeMillis() - subscriber.lastSentAt >= heartbeatMs) {
+                // 프록시가 유휴 연결을 끊지 않도록 주석 한 줄을 보낸다.
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                subscriber.lastSentAt = System.currentTimeMillis();
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+        } catch (RuntimeException e) {
+            log.warn("change stream poll failed", e);
+        }
+    }
+
+    // 같은 위치를 먼저 읽기 시작한 작업이 있으면 그 결과를 기다린다.
+    private ChangePage shared(Map<Long, CompletableFuture<ChangePage>> pages, long position) {
+        CompletableFuture<ChangePage> created = new CompletableFuture<>();
+        CompletableFuture<ChangePage> page = pages.putIfAbsent(position, created);
+        if (page == null) {
+            try {
+                created.complete(changeLogService.readChanges(position, batchSize));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+            page = created;
+        }
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, List<ChangeDTO> changes, long next) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(next))
+                    .name("changes")
+                    .data(changes, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 연결이 끊긴 구독자. SseEmitter 가 onError / onCompletion 을 호출한다.
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CompressedTextConverter;
+import com.example.demo.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// 압축 기능을 넣기 전에 저장된 긴 content 를 서버를 멈추지 않고 조금씩 압축된 형식으로 바꾼다.
+// (app.memo.compression.migrate=true 일 때만 동작)
+// interval-ms 마다 id 순서로 batch-size 개씩 읽어서 바꾸고, 마지막 id 를 기억했다가 다음 번에 이어서 한다.
+// shard 를 하나씩 차례대로 끝까지 바꾼다.
+// 내용은 같으므로 version 은 올리지 않고, 읽은 뒤 다른 요청이 수정한 행(version 이 바뀐 행)은 건너뛴다.
+@Slf4j
+@Component
+public class MemoCompressionMigrator {
+    // 이미 압축된 행(MARKER 로 시작)은 읽지 않는다. 압축된 content 도 min-size 보다 길 수 있어서 길이만으로는 거를 수 없다.
+    private static final String SELECT_SQL = "select id, content, version from memo "
+            + "where id > ? and char_length(content) >= ? and content not like ? order by id limit ?";
+    private static final String COMPRESSED_PATTERN = CompressedTextConverter.MARKER + "%";
+    private static final String UPDATE_SQL = "update memo set content = ? where id = ? and version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompressedTextConverter compressedTextConverter;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int minSize;
+    private final int batchSize;
+
+    // @Scheduled(fixedDelay) 는 이전 실행이 끝난 뒤에 다시 실행되므로 아래 상태는 한 스레드에서만 바뀐다.
+    private int shard = 0;
+    private long lastId = 0;
+    private boolean finished = false;
+    private long migrated = 0;
+
+    private record Row(long id, String content, long version) {
+    }
+
+    public MemoCompressionMigrator(JdbcTemplate jdbcTemplate, CompressedTextConverter compressedTextConverter, ShardRouter shardRouter,
+                                   @Value("${app.memo.compression.migrate:false}") boolean enabled,
+                                   @Value("${app.memo.compression.min-size:1024}") int minSize,
+                                   @Value("${app.memo.compression.migrate-batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compressedTextConverter = compressedTextConverter;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.memo.compression.migrate-interval-ms:1000}")
+    public void migrateBatch() {
+        if (!enabled || finished)
+            return;
+        shardRouter.onShard(shard, this::migrateShardBatch);
+    }
+
+    private Void migrateShardBatch() {
+        List<Row> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new Row(rs.getLong(1), rs.getString(2), rs.getLong(3)), lastId, minSize, COMPRESSED_PATTERN, batchSize);
+        if (rows.isEmpty()) {
+            if (++shard < shardRouter.shardCount()) {
+                lastId = 0;
+                return null;
+            }
+            finished = true;
+            log.info("memo content compression finished, {} rows compressed", migrated);
+            return null;
+        }
+        for (Row row : rows) {
+            if (!CompressedTextConverter.isCompressed(row.content())) {
+                String compressed = compressedTextConverter.convertToDatabaseColumn(row.content());
+                if (CompressedTextConverter.isCompressed(compressed))
+                    migrated += jdbcTemplate.update(UPDATE_SQL, compressed, row.id(), row.version());
+            }
+            lastId = row.id();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CompressedTextConverter;
+import com.example.demo.entity.Memo;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Optional;
+
+// 메모 content 를 엔티티로 읽지 않고 필요한 구간만 DB 에서 잘라서 내려준다.
+// 위치와 길이는 모두 코드 포인트 단위다. (PATCH 의 content_edits 와 같다. 이모지 같은 보충 문자도 한 글자로 센다)
+// PostgreSQL 의 char_length / substring 은 코드 포인트 단위라서 길이는 char_length 로, 내용은 substring 으로
+// CHUNK_SIZE 글자씩 읽기 때문에 메모가 아무리 커도 힙에는 한 chunk 만 올라온다.
+// H2 처럼 UTF-16 단위로 세는 DB 와 압축된 행(CompressedTextConverter)은 DB 에서 자를 수 없으므로
+// 값을 한 번 읽어서 (압축된 행은 푸는 대로) 코드 포인트를 세면서 필요한 구간만 쓴다.
+// 쿼리는 메모가 있는 shard 에서 실행한다.
+@Service
+public class MemoContentService {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int PREFIX_SIZE = 32;
+    // 압축 여부와 원래 길이는 content 앞부분만 보고 알 수 있다.
+    private static final String INFO_SQL = "select substring(content, 1, " + PREFIX_SIZE + "), coalesce(char_length(content), 0), version from memo where id = ?";
+    private static final String ROW_SQL = "select content, version from memo where id = ?";
+    private static final String CONTENT_SQL = "select content from memo where id = ? and version = ?";
+    // 읽는 도중 메모가 수정되면 앞뒤 chunk 가 다른 version 이 섞이지 않도록 version 도 조건에 넣는다.
+    private static final String CHUNK_SQL = "select substring(content, ?, ?) from memo where id = ? and version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemoWriteBuffer memoWriteBuffer;
+    private final ShardRouter shardRouter;
+    // DB 의 char_length / substring 이 코드 포인트 단위인지. 모든 shard 가 같은 DB 를 쓰므로 처음 한 번만 확인한다.
+    private volatile Boolean sqlCountsCodePoints;
+
+    public MemoContentService(JdbcTemplate jdbcTemplate, MemoWriteBuffer memoWriteBuffer, ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.memoWriteBuffer = memoWriteBuffer;
+        this.shardRouter = shardRouter;
+    }
+
+    // inDatabase 가 false 면 DB 에서 자를 수 없는 값이라 writeContent 가 값 전체를 읽는다.
+    public record ContentInfo(int length, long version, boolean inDatabase) {
+    }
+
+    public ContentInfo getContentInfo(Long id) {
+        Optional<Memo> buffered = memoWriteBuffer.get(id);
+        if (buffered.isPresent())
+            return new ContentInfo(length(buffered.get().getContent()), buffered.get().getVersion(), false);
+
+        int shard = shardRouter.shardOf(id);
+        List<ContentInfo> rows;
+        if (sqlCountsCodePoints(shard)) {
+            rows = shardRouter.onShard(shard, () -> jdbcTemplate.query(INFO_SQL, (rs, rowNum) -> {
+                String prefix = rs.getString(1);
+                if (CompressedTextConverter.isCompressed(prefix))
+                    return new ContentInfo(CompressedTextConverter.codePointCount(prefix), rs.getLong(3), false);
+                return new ContentInfo(rs.getInt(2), rs.getLong(3), true);
+            }, id));
+        } else {
+            rows = shardRouter.onShard(shard, () -> jdbcTemplate.query(ROW_SQL, (rs, rowNum) ->
+                    new ContentInfo(storedLength(rs.getString(1)), rs.getLong(2), false), id));
+        }
+        if (rows.isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다.");
+        ContentInfo info = rows.get(0);
+        // 예전 형식으로 압축된 행에는 코드 포인트 수가 없어서 풀면서 센다.
+        if (info.length() < 0)
+            info = new ContentInfo(storedLength(storedContent(id, info.version())), info.version(), false);
+        return info;
+    }
+
+    // content 의 [start, end) 구간을 out 에 쓴다. info 는 getContentInfo 로 받은 값이다.
+    public void writeContent(Long id, ContentInfo info, int start, int end, Writer out) throws IOException {
+        Optional<Memo> buffered = memoWriteBuffer.get(id);
+        if (buffered.isPresent() && buffered.get().getVersion() == info.version()) {
+            String content = buffered.get().getContent();
+            copyCodePoints(new StringReader(content == null ? "" : content), start, end, out);
+            return;
+        }
+
+        if (!info.inDatabase()) {
+            try (Reader reader = CompressedTextConverter.openReader(storedContent(id, info.version()))) {
+                copyCodePoints(reader, start, end, out);
+            }
+            return;
+        }
+
+        int shard = shardRouter.shardOf(id);
+        for (int from = start; from < end; from += CHUNK_SIZE) {
+            int position = from + 1;
+            int count = Math.min(CHUNK_SIZE, end - from);
+            // SQL 의 substring 은 1 부터 센다.
+            List<String> chunk = shardRouter.onShard(shard, () ->
+                    jdbcTemplate.queryForList(CHUNK_SQL, String.class, position, count, id, info.version()));
+            if (chunk.isEmpty())
+                throw new IllegalStateException("memo " + id + " was modified while streaming its content");
+            if (chunk.get(0) != null)
+                out.write(chunk.get(0));
+        }
+    }
+
+    private String storedContent(Long id, long version) {
+        List<String> value = shardRouter.onShard(shardRouter.shardOf(id), () ->
+                jdbcTemplate.queryForList(CONTENT_SQL, String.class, id, version));
+        if (value.isEmpty())
+            throw new IllegalStateException("memo " + id + " was modified while streaming its content");
+        return value.get(0);
+    }
+
+    private boolean sqlCountsCodePoints(int shard) {
+        Boolean counts = sqlCountsCodePoints;
+        if (counts == null) {
+            counts = shardRouter.onShard(shard, () -> jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")));
+            sqlCountsCodePoints = counts;
+        }
+        return counts;
+    }
+
+    // DB 에 저장된 값(압축되었을 수 있다)의 원래 코드 포인트 수.
+    private static int storedLength(String value) {
+        if (!CompressedTextConverter.isCompressed(value))
+            return length(value);
+        int length = CompressedTextConverter.codePointCount(value);
+        if (length >= 0)
+            return length;
+        try (Reader reader = CompressedTextConverter.openReader(value)) {
+            return countCodePoints(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int length(String content) {
+        return content == null ? 0 : content.codePointCount(0, content.length());
+    }
+
+    // String.codePointCount 와 같이 짝이 맞는 surrogate 는 한 글자로, 짝이 없는 surrogate 는 각각 한 글자로 센다.
+    static int countCodePoints(Reader reader) throws IOException {
+        char[] buffer = new char[8192];
+        int count = 0;
+        boolean afterHigh = false;
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (!(afterHigh && Character.isLowSurrogate(c)))
+                    count++;
+                afterHigh = Character.isHighSurrogate(c);
+            }
+        }
+        return count;
+    }
+
+    // reader 에서 코드 포인트 [start, end) 구간을 out 에 쓴다. 앞부분은 읽으면서 버린다.
+    static void copyCodePoints(Reader reader, int start, int end, Writer out) throws IOException {
+        char[] buffer = new char[8192];
+        int index = -1;
+        boolean afterHigh = false;
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            int from = -1;
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (!(afterHigh && Character.isLowSurrogate(c)))
+                    index++;
+                afterHigh = Character.isHighSurrogate(c);
+                if (index >= end) {
+                    if (from >= 0)
+                        out.write(buffer, from, i - from);
+                    return;
+                }
+                if (index >= start && from < 0)
+                    from = i;
+            }
+            if (from >= 0)
+                out.write(buffer, from, read - from);
+        }
+    }
+}
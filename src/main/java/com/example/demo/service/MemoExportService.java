@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Memo;
+import com.example.demo.search.MemoSearchIndex;
+import com.example.demo.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// 메모 전체를 NDJSON(한 줄에 메모 하나)으로 내보낸다.
+// 페이지 단위로 List 를 만들지 않고, DB 커서에서 FETCH_SIZE 개씩 받아오는 대로 응답에 쓰고
+// 다 쓴 메모는 영속성 컨텍스트에서 detach 해서 테이블 크기와 상관없이 메모리 사용량이 일정하다.
+// 샤딩을 켜면 shard 를 하나씩 차례대로 내보내므로 id 순서는 shard 안에서만 지켜진다.
+// keyword 는 목록(GET /memos)과 같이 검색 색인(name + content)에서 찾고, 찾은 id 의 메모를 ID_CHUNK_SIZE 개씩 읽는다.
+@Service
+@AllArgsConstructor
+public class MemoExportService {
+    private static final int FETCH_SIZE = 500;
+    // IN 절의 파라미터 개수 제한 때문에 나눠서 읽는다.
+    private static final int ID_CHUNK_SIZE = 1000;
+    // Hibernate 의 JDBC fetch size 힌트 (org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE)
+    private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+
+    private EntityManager entityManager;
+    private ObjectMapper objectMapper;
+    private ShardRouter shardRouter;
+    private MemoSearchIndex memoSearchIndex;
+
+    public void exportMemos(OutputStream out, Long categoryId, String keyword) throws IOException {
+        StringBuilder jpql = new StringBuilder("select m from Memo m left join fetch m.category c where 1 = 1");
+        if (categoryId != null)
+            jpql.append(" and c.id = :categoryId");
+        // 검색어에서 gram 이 나오지 않으면 목록과 같이 거르지 않는다.
+        List<Long> matches = keyword == null ? null : memoSearchIndex.matches(keyword);
+        if (matches != null)
+            jpql.append(" and m.id in :ids");
+        jpql.append(" order by m.id");
+
+        // 메모 한 줄마다 flush 하지 않고 응답 버퍼가 찰 때 내보낸다.
+        ObjectWriter writer = objectMapper.writerFor(Memo.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            Map<Integer, List<Long>> matchesByShard = matches == null ? null : shardRouter.groupByShard(matches, Long::longValue);
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int current = shard;
+                try {
+                    if (matchesByShard == null) {
+                        shardRouter.readOnShard(current, () -> writeMemos(jpql.toString(), categoryId, null, writer, generator));
+                        continue;
+                    }
+                    List<Long> ids = matchesByShard.getOrDefault(shard, List.of());
+                    for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                        List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+                        shardRouter.readOnShard(current, () -> writeMemos(jpql.toString(), categoryId, chunk, writer, generator));
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+
+    // PostgreSQL 은 autocommit 이 꺼져 있어야 fetch size 만큼 나눠서 가져오기 때문에 트랜잭션 안에서 실행한다. (readOnShard)
+    private Void writeMemos(String jpql, Long categoryId, List<Long> ids, ObjectWriter writer, JsonGenerator generator) {
+        TypedQuery<Memo> query = entityManager.createQuery(jpql, Memo.class)
+                .setHint(HINT_FETCH_SIZE, FETCH_SIZE);
+        if (categoryId != null)
+            query.setParameter("categoryId", categoryId);
+        if (ids != null)
+            query.setParameter("ids", ids);
+
+        try (Stream<Memo> memos = query.getResultStream()) {
+            Iterator<Memo> iterator = memos.iterator();
+            while (iterator.hasNext()) {
+                Memo memo = iterator.next();
+                writer.writeValue(generator, memo);
+                generator.writeRaw('\n');
+                entityManager.detach(memo);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+}
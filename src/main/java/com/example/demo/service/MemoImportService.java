@@ -0,0 +1,177 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.CategoryCache;
+import com.example.demo.cache.NameFilter;
+import com.example.demo.cache.ResponseCache;
+import com.example.demo.dto.MemoDTO;
+import com.example.demo.dto.MemoImportResult;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.CompressedTextConverter;
+import com.example.demo.entity.Memo;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.search.MemoSearchIndex;
+import com.example.demo.search.NameSuggester;
+import com.example.demo.sharding.IdGenerator;
+import com.example.demo.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Types;
+import java.util.*;
+
+// 메모 대량 등록.
+// 요청 body(JSON 배열 또는 NDJSON)를 스트림으로 읽으면서 BATCH_SIZE 개씩 모아 처리하기 때문에 전체를 메모리에 올리지 않는다.
+// 묶음마다 category 는 한 번씩만 찾고, 중복 이름은 in 쿼리 한 번으로 확인한 뒤 JDBC batch insert 로 저장한다.
+// (JPA save 는 엔티티마다 insert 를 한 건씩 실행하므로 여기서는 JdbcTemplate 을 직접 쓴다.)
+// id 는 insert 전에 IdGenerator 로 만들고, 메모가 들어갈 shard 별로 나눠 shard 마다 한 트랜잭션으로 저장한다.
+@Service
+@AllArgsConstructor
+public class MemoImportService {
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL = "insert into memo (id, name, content, category_id) values (?, ?, ?, ?)";
+
+    private ObjectMapper objectMapper;
+    private JdbcTemplate jdbcTemplate;
+    private CompressedTextConverter compressedTextConverter;
+    private CategoryMemoCounter categoryMemoCounter;
+    private MemoRepository memoRepository;
+    private CategoryCache categoryCache;
+    private MemoSearchIndex memoSearchIndex;
+    private NameSuggester nameSuggester;
+    private NameFilter nameFilter;
+    private ResponseCache responseCache;
+    private ChangeLogService changeLogService;
+    private ShardRouter shardRouter;
+    private IdGenerator idGenerator;
+    private MemoNameRegistry memoNameRegistry;
+
+    public MemoImportResult importMemos(InputStream body) throws IOException {
+        MemoImportResult result = new MemoImportResult();
+        List<MemoDTO> batch = new ArrayList<>(BATCH_SIZE);
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            // 배열이면 배열 안의 객체를, 아니면 줄마다 있는 객체(NDJSON)를 차례대로 읽는다.
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array)
+                token = parser.nextToken();
+            while (token == JsonToken.START_OBJECT) {
+                batch.add(objectMapper.readValue(parser, MemoDTO.class));
+                if (batch.size() == BATCH_SIZE) {
+                    insertBatch(batch, result);
+                    batch.clear();
+                }
+                token = parser.nextToken();
+            }
+            if (token != null && !(array && token == JsonToken.END_ARRAY))
+                result.setError("메모 객체가 아닌 값이 있습니다: " + token);
+        } catch (JsonProcessingException e) {
+            // 형식이 깨진 곳부터는 읽을 수 없으므로 그 전까지만 저장하고 어디서 멈췄는지 알려준다.
+            result.setError("JSON 형식이 잘못되었습니다: " + e.getOriginalMessage());
+        }
+        if (!batch.isEmpty())
+            insertBatch(batch, result);
+        return result;
+    }
+
+    private void insertBatch(List<MemoDTO> batch, MemoImportResult result) {
+        // Bloom filter 에 있을 수도 있는 이름만 DB 에 중복인지 물어본다.
+        Set<String> names = new HashSet<>();
+        for (MemoDTO memoDTO : batch) {
+            if (memoDTO.getName() != null && nameFilter.mightContainMemo(memoDTO.getName()))
+                names.add(memoDTO.getName());
+        }
+        Set<String> existing = new HashSet<>();
+        if (!names.isEmpty())
+            shardRouter.scatter(() -> memoRepository.findNamesIn(names)).forEach(existing::addAll);
+
+        // 묶음 안에서 결과를 요청 순서대로 채운다. errors[i] 가 null 이면 저장 대상이다.
+        String[] errors = new String[batch.size()];
+        Map<Long, Category> categories = new HashMap<>();
+        List<MemoDTO> accepted = new ArrayList<>(batch.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            MemoDTO memoDTO = batch.get(i);
+            if (memoDTO.getName() == null || memoDTO.getName().equals("")) {
+                errors[i] = "제목이 비었습니다.";
+            } else if (existing.contains(memoDTO.getName()) || !seen.add(memoDTO.getName())) {
+                errors[i] = "중복된 메모입니다.";
+            } else {
+                Long categoryId = memoDTO.getCategory_id();
+                if (categoryId != null && !categories.containsKey(categoryId))
+                    categories.put(categoryId, categoryCache.findById(categoryId).orElse(null));
+                accepted.add(memoDTO);
+            }
+        }
+
+        // 샤딩을 켜면 다른 shard 에 저장되는 메모와 겹치지 않도록 이름 등록부에 이름을 잡는다. 못 잡은 이름은 중복이다.
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> taken = new HashSet<>();
+        for (MemoDTO memoDTO : accepted) {
+            long id = idGenerator.nextId();
+            if (memoNameRegistry.claim(id, memoDTO.getName()))
+                ids.put(memoDTO.getName(), id);
+            else
+                taken.add(memoDTO.getName());
+        }
+        List<MemoDTO> claimed = accepted.stream().filter(memoDTO -> ids.containsKey(memoDTO.getName())).toList();
+        shardRouter.groupByShard(claimed, memoDTO -> ids.get(memoDTO.getName())).forEach((shard, group) -> {
+            try {
+                shardRouter.writeOnShard(shard, () -> insertShard(group, ids, categories));
+            } catch (DataAccessException e) {
+                // 이 shard 의 묶음 전체가 롤백되므로 여기에 저장하려던 메모를 모두 실패로 보고하고 잡은 이름을 놓는다.
+                group.forEach(memoDTO -> memoNameRegistry.release(ids.remove(memoDTO.getName()), memoDTO.getName()));
+            }
+        });
+
+        for (int i = 0; i < batch.size(); i++) {
+            MemoDTO memoDTO = batch.get(i);
+            Long id = errors[i] == null ? ids.get(memoDTO.getName()) : null;
+            if (errors[i] != null || id == null) {
+                result.failure(memoDTO.getName(), errors[i] != null ? errors[i]
+                        : taken.contains(memoDTO.getName()) ? "중복된 메모입니다." : "저장에 실패했습니다.");
+                continue;
+            }
+            result.success();
+            nameFilter.addMemo(memoDTO.getName());
+            nameSuggester.putMemo(id, memoDTO.getName());
+            memoSearchIndex.index(Memo.builder()
+                    .id(id)
+                    .name(memoDTO.getName())
+                    .content(memoDTO.getContent())
+                    .category(categories.get(memoDTO.getCategory_id()))
+                    .build());
+        }
+    }
+
+    private Void insertShard(List<MemoDTO> group, Map<String, Long> ids, Map<Long, Category> categories) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, group, group.size(), (ps, memoDTO) -> {
+            Category category = categories.get(memoDTO.getCategory_id());
+            ps.setLong(1, ids.get(memoDTO.getName()));
+            ps.setString(2, memoDTO.getName());
+            ps.setString(3, compressedTextConverter.convertToDatabaseColumn(memoDTO.getContent()));
+            if (category == null)
+                ps.setNull(4, Types.BIGINT);
+            else
+                ps.setLong(4, category.getId());
+        });
+        // 카테고리별 메모 개수도 같은 트랜잭션에서 더한다.
+        Map<Long, Long> perCategory = new HashMap<>();
+        for (MemoDTO memoDTO : group) {
+            Category category = categories.get(memoDTO.getCategory_id());
+            if (category != null)
+                perCategory.merge(category.getId(), 1L, Long::sum);
+        }
+        perCategory.forEach(categoryMemoCounter::increment);
+        responseCache.invalidate();
+        changeLogService.recordMemos(group.stream().map(memoDTO -> ids.get(memoDTO.getName())).toList(), false);
+        return null;
+    }
+}
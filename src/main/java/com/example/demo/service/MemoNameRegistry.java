@@ -0,0 +1,122 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Memo;
+import com.example.demo.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// 샤딩을 켰을 때 메모 이름을 모든 shard 에서 겹치지 않게 한다. (memo_name, shard 0)
+// memo 의 name unique 제약은 shard 안에서만 지켜지므로, 이름을 저장하기 전에 shard 0 의 memo_name 에 (이름, 메모 id)를
+// insert 해서 잡는다. 이름의 primary key 때문에 다른 shard 의 메모가 같은 이름을 동시에 잡으려 하면 한 쪽만 성공한다.
+// 메모를 저장하지 못했거나 이름을 바꾸거나 지우면 잡은 이름을 놓는다.
+//
+// 이름을 잡은 뒤 메모를 저장하기 전에 서버가 내려가면 행이 남는다. 잡은 지 claim-grace-ms 가 지났는데 그 메모가
+// 그 이름을 쓰고 있지 않으면(메모가 없거나 다른 이름이면) 다른 메모가 가져갈 수 있다.
+// shard 가 하나면 DB 의 unique 제약으로 충분하므로 아무것도 하지 않는다.
+@Component
+public class MemoNameRegistry {
+    private static final int RELEASE_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final MemoWriteBuffer memoWriteBuffer;
+    private final Duration claimGrace;
+
+    public MemoNameRegistry(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, MemoWriteBuffer memoWriteBuffer,
+                            @Value("${app.memo.name-claim-grace-ms:60000}") long claimGraceMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.memoWriteBuffer = memoWriteBuffer;
+        this.claimGrace = Duration.ofMillis(claimGraceMs);
+    }
+
+    public boolean isEnabled() {
+        return shardRouter.shardCount() > 1;
+    }
+
+    // 이름을 memoId 의 것으로 잡는다. 이미 그 메모의 이름이면 true, 다른 메모가 쓰고 있으면 false 를 리턴한다.
+    // 한 문장씩 바로 커밋한다. (메모를 저장하는 shard 의 트랜잭션과 따로)
+    public boolean claim(long memoId, String name) {
+        if (!isEnabled() || name == null)
+            return true;
+        // 잡으려는 사이에 행이 지워지면 한 번 더 insert 한다.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Instant now = Instant.now();
+            try {
+                shardRouter.onShard(0, () -> jdbcTemplate.update(
+                        "insert into memo_name (name, memo_id, claimed_at) values (?, ?, ?)", name, memoId, Timestamp.from(now)));
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // 이미 있는 이름
+            }
+            List<Map<String, Object>> rows = shardRouter.onShard(0, () -> jdbcTemplate.queryForList(
+                    "select memo_id, claimed_at from memo_name where name = ?", name));
+            if (rows.isEmpty())
+                continue;
+            long owner = ((Number) rows.get(0).get("memo_id")).longValue();
+            if (owner == memoId)
+                return true;
+            Instant claimedAt = ((Timestamp) rows.get(0).get("claimed_at")).toInstant();
+            if (claimedAt.isAfter(now.minus(claimGrace)) || uses(owner, name))
+                return false;
+            return shardRouter.onShard(0, () -> jdbcTemplate.update(
+                    "update memo_name set memo_id = ?, claimed_at = ? where name = ? and memo_id = ?",
+                    memoId, Timestamp.from(now), name, owner)) == 1;
+        }
+        return false;
+    }
+
+    // memoId 가 잡고 있는 이름이면 놓는다.
+    public void release(long memoId, String name) {
+        if (!isEnabled() || name == null)
+            return;
+        shardRouter.onShard(0, () -> jdbcTemplate.update("delete from memo_name where name = ? and memo_id = ?", name, memoId));
+    }
+
+    // 지운 메모들의 이름을 놓는다. 트랜잭션 안이면 커밋된 뒤에 놓는다. (롤백되면 메모가 남으므로 놓지 않는다)
+    public void releaseAll(Collection<Long> memoIds) {
+        if (!isEnabled() || memoIds.isEmpty())
+            return;
+        List<Long> ids = List.copyOf(memoIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteByMemoIds(ids);
+                }
+            });
+            return;
+        }
+        deleteByMemoIds(ids);
+    }
+
+    private void deleteByMemoIds(List<Long> ids) {
+        // IN 절의 파라미터 개수 제한 때문에 나눠서 지운다. onShard 는 진행 중인 트랜잭션 밖에서 실행한다.
+        for (int from = 0; from < ids.size(); from += RELEASE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + RELEASE_CHUNK_SIZE, ids.size()));
+            String in = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            shardRouter.onShard(0, () -> jdbcTemplate.update("delete from memo_name where memo_id in (" + in + ")", chunk.toArray()));
+        }
+    }
+
+    // 메모가 지금 그 이름을 쓰고 있는지. 버퍼에 남은 이름 변경도 본다.
+    private boolean uses(long memoId, String name) {
+        if (memoWriteBuffer.get(memoId).map(Memo::getName).filter(name::equals).isPresent())
+            return true;
+        List<String> names = shardRouter.onShard(shardRouter.shardOf(memoId), () -> jdbcTemplate.queryForList(
+                "select name from memo where id = ?", String.class, memoId));
+        return !names.isEmpty() && name.equals(names.get(0));
+    }
+}
@@ -1,75 +1,517 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.CategoryCache;
+import com.example.demo.cache.NameFilter;
+import com.example.demo.cache.ResponseCache;
+import com.example.demo.dto.Cursor;
+import com.example.demo.dto.CursorPage;
 import com.example.demo.dto.MemoDTO;
+import com.example.demo.dto.MemoPatchDTO;
+import com.example.demo.dto.MemoSummaryDTO;
 import com.example.demo.entity.Category;
 import com.example.demo.entity.Memo;
-import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.MemoRepository;
+import com.example.demo.search.MemoSearchIndex;
+import com.example.demo.search.NameSuggester;
+import com.example.demo.sharding.IdGenerator;
+import com.example.demo.sharding.ShardRouter;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class MemoService {
+    private static final int MAX_BULK_DELETE = 10000;
+    private static final int DELETE_CHUNK_SIZE = 1000;
+    private static final int PATCH_RETRIES = 3;
+
     private MemoRepository memoRepository;
-    private CategoryRepository categoryRepository;
+    private CategoryCache categoryCache;
+    private MemoSearchIndex memoSearchIndex;
+    private NameSuggester nameSuggester;
+    private NameFilter nameFilter;
+    private MemoWriteBuffer memoWriteBuffer;
+    private CategoryMemoCounter categoryMemoCounter;
+    private ResponseCache responseCache;
+    private ChangeLogService changeLogService;
+    private ShardRouter shardRouter;
+    private IdGenerator idGenerator;
+    private MemoNameRegistry memoNameRegistry;
 
+    // 메모와 카테고리별 메모 개수를 한 트랜잭션에서 저장한다.
+    // id 를 먼저 만들어서 메모가 들어갈 shard 를 정하고, 그 shard 의 트랜잭션에서 저장한다.
+    // write-behind 버퍼를 쓰면 버퍼에만 있는 이름 변경과 겹치지 않도록 이름을 잡아둔 채로 저장한다.
+    // 샤딩을 켜면 다른 shard 의 메모와 겹치지 않도록 shard 0 의 이름 등록부에도 이름을 잡고, 저장하지 못하면 놓는다.
     public Memo createMemo(MemoDTO memoDTO){
-        Optional<Memo> memoOptional = memoRepository.findByName(memoDTO.getName());
-        if (memoOptional.isPresent())
+        Long id = idGenerator.nextId();
+        if (!memoWriteBuffer.reserveName(id, memoDTO.getName()))
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+        Memo memo = null;
+        try {
+            if (!memoNameRegistry.claim(id, memoDTO.getName()) || nameExistsInShards(memoDTO.getName()))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
 
-        Category category = categoryRepository.getCategoriesById(memoDTO.getCategory_id());
-        Memo memo = Memo.builder()
-                .id(memoDTO.getId())
-                .name(memoDTO.getName())
-                .content(memoDTO.getContent())
-                .category(category)
-                .build();
+            Category category = memoDTO.getCategory_id() == null ? null
+                    : categoryCache.findById(memoDTO.getCategory_id()).orElse(null);
+            Memo created = Memo.builder()
+                    .id(id)
+                    .name(memoDTO.getName())
+                    .content(memoDTO.getContent())
+                    .category(category)
+                    .build();
 
-        return memoRepository.save(memo);
+            memo = shardRouter.write(created.getId(), () -> {
+                Memo saved = saveMemo(created);
+                if (category != null)
+                    categoryMemoCounter.increment(category.getId(), 1);
+                return saved;
+            });
+        } finally {
+            memoWriteBuffer.releaseName(id, memoDTO.getName());
+            if (memo == null)
+                memoNameRegistry.release(id, memoDTO.getName());
+        }
+        memoSearchIndex.index(memo);
+        nameSuggester.putMemo(memo.getId(), memo.getName());
+        return memo;
     }
 
+    // Bloom filter 에 없는 이름은 DB 에도 없으므로 존재 여부 조회를 건너뛴다.
+    // 메모가 어느 shard 에 있는지 이름으로는 알 수 없어서 모든 shard 에 물어본다.
+    // name 의 unique 제약은 shard 안에서만 지켜지고, shard 끼리 동시에 같은 이름을 저장하는 것은 MemoNameRegistry 가 막는다.
+    // 버퍼에만 있는 이름 변경(다른 메모가 잡아둔 이름)도 있는 이름으로 본다.
+    private boolean nameExists(String name) {
+        return memoWriteBuffer.hasName(name) || nameExistsInShards(name);
+    }
+
+    private boolean nameExistsInShards(String name) {
+        return nameFilter.mightContainMemo(name) && shardRouter.scatter(() -> memoRepository.existsByName(name)).contains(true);
+    }
+
+    // 조회는 ShardRouter 가 shard 마다 readOnly 트랜잭션을 열어서 실행한다. (replica 라우팅을 켜면 replica 에서 읽는다)
+    // 정렬된 페이지는 shard 마다 같은 정렬로 읽어서 합친 뒤 요청한 구간만 자른다.
     public Page<Memo> getMemos(Pageable pageable, String keyword) {
         if (keyword == null){
-            System.out.println("keyword is null");
-            return memoRepository.findAll(pageable);
+            return shardRouter.page(pageable, memoRepository::findAll).map(memoWriteBuffer::overlay);
         }
 //        if (keyword == null)
 //            return memoRepository.findAll(pageable);
-        return memoRepository.findByNameContains(pageable, keyword);
+        // 검색어는 DB 의 LIKE 검색 대신 메모리 역색인에서 찾고, 찾은 id 의 메모만 DB 에서 가져온다.
+        MemoSearchIndex.Hits hits = memoSearchIndex.search(keyword, pageable);
+        if (hits == null)
+            return shardRouter.page(pageable, memoRepository::findAll).map(memoWriteBuffer::overlay);
+
+        Map<Long, Memo> memos = shardRouter.gather(hits.ids(), memoRepository::findAllById).stream()
+                .collect(Collectors.toMap(Memo::getId, Function.identity()));
+        List<Memo> ranked = hits.ids().stream()
+                .map(memos::get)
+                .filter(memo -> memo != null)
+                .map(memoWriteBuffer::overlay)
+                .toList();
+        return new PageImpl<>(ranked, pageable, hits.total());
+    }
+
+    // content 를 제외한 요약 목록. 검색어가 있으면 getMemos 와 같이 검색 색인에서 id 를 찾는다.
+    public Page<MemoSummaryDTO> getMemoSummaries(Pageable pageable, String keyword) {
+        MemoSearchIndex.Hits hits = keyword == null ? null : memoSearchIndex.search(keyword, pageable);
+        if (hits == null)
+            return shardRouter.page(pageable, memoRepository::findSummaries).map(this::overlaySummary);
+
+        Map<Long, MemoSummaryDTO> summaries = shardRouter.gather(hits.ids(), memoRepository::findSummariesByIdIn).stream()
+                .collect(Collectors.toMap(MemoSummaryDTO::getId, Function.identity()));
+        List<MemoSummaryDTO> ranked = hits.ids().stream()
+                .map(summaries::get)
+                .filter(summary -> summary != null)
+                .map(this::overlaySummary)
+                .toList();
+        return new PageImpl<>(ranked, pageable, hits.total());
+    }
+
+    // 커서 페이징. 정렬은 id 또는 name(오름차순)만 지원하고, 둘 다 인덱스 순서대로 읽는다.
+    // name 정렬은 이름이 있는 메모를 DB 의 정렬(collation) 순서로 먼저 주고, 이름이 없는 메모를 id 순서로 뒤에 준다.
+    // shard 가 하나면 DB 가 정렬한 결과를 그대로 쓴다. 커서는 버퍼에 남은 수정이 아니라 DB 의 값으로 만든다.
+    public CursorPage<Memo> scrollMemos(String after, int size, String sort) {
+        PageRequest limit = CursorPage.limit(size);
+        if (!sort.equals("id") && !sort.equals("name"))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "지원하지 않는 정렬입니다.");
+        if (sort.equals("name") && shardRouter.shardCount() > 1)
+            return scrollByNameOnShards(after, size, limit).map(memoWriteBuffer::overlay);
+
+        Cursor cursor = after == null ? null : Cursor.decode(after, sort);
+        List<Memo> rows = new ArrayList<>();
+        shardRouter.scatter(() -> sort.equals("id")
+                ? cursor == null
+                        ? memoRepository.findAllBy(limit.withSort(Sort.by("id")))
+                        : memoRepository.findAfterId(cursor.id(), limit)
+                : scrollByName(cursor, limit)).forEach(rows::addAll);
+        // id 는 shard 마다 읽은 결과를 합쳐서 다시 정렬해도 DB 의 순서와 같다.
+        if (shardRouter.shardCount() > 1) {
+            rows.sort(Comparator.comparing(Memo::getId));
+            rows = rows.subList(0, Math.min(rows.size(), limit.getPageSize()));
+        }
+        return CursorPage.of(rows, size, memo -> new Cursor(sort, memo.getId(), memo.getName()))
+                .map(memoWriteBuffer::overlay);
+    }
+
+    // 현재 shard 에서 커서 다음 (size + 1) 개를 이름 순서로 읽는다. 이름이 있는 메모가 모자라면 이름이 없는 메모로 채운다.
+    private List<Memo> scrollByName(Cursor cursor, PageRequest limit) {
+        if (cursor != null && cursor.key() == null)
+            return memoRepository.findUnnamedAfterId(cursor.id(), limit);
+        List<Memo> rows = new ArrayList<>(cursor == null
+                ? memoRepository.findNamed(limit)
+                : memoRepository.findAfterName(cursor.key(), cursor.id(), limit));
+        if (rows.size() < limit.getPageSize())
+            rows.addAll(memoRepository.findUnnamedAfterId(Long.MIN_VALUE, PageRequest.of(0, limit.getPageSize() - rows.size())));
+        return rows;
+    }
+
+    // 여러 shard 의 name 정렬. Java 의 문자열 비교는 DB 의 collation 과 다를 수 있어서, 합친 뒤 다시 정렬하지 않고
+    // shard 별 결과의 앞에서부터 하나씩 꺼내고(merge), 다음 커서에는 shard 마다 어디까지 꺼냈는지를 담는다.
+    // 그래서 shard 사이의 순서가 DB 와 조금 달라도 빠지거나 두 번 나오는 메모가 없다.
+    private CursorPage<Memo> scrollByNameOnShards(String after, int size, PageRequest limit) {
+        int shardCount = shardRouter.shardCount();
+        List<Cursor> positions = after == null
+                ? new ArrayList<>(Collections.nCopies(shardCount, null))
+                : new ArrayList<>(Cursor.decodeAll(after, "name", shardCount));
+        List<List<Memo>> results = shardRouter.scatterByShard(shard -> scrollByName(positions.get(shard), limit));
+        Comparator<Memo> order = Comparator.comparing(Memo::getName, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                .thenComparing(Memo::getId);
+
+        int[] heads = new int[shardCount];
+        List<Memo> page = new ArrayList<>(size);
+        while (page.size() < size) {
+            int next = -1;
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (heads[shard] < results.get(shard).size() && (next < 0
+                        || order.compare(results.get(shard).get(heads[shard]), results.get(next).get(heads[next])) < 0))
+                    next = shard;
+            }
+            if (next < 0)
+                break;
+            Memo memo = results.get(next).get(heads[next]++);
+            page.add(memo);
+            positions.set(next, new Cursor("name", memo.getId(), memo.getName()));
+        }
+        boolean hasNext = false;
+        for (int shard = 0; shard < shardCount; shard++)
+            hasNext |= heads[shard] < results.get(shard).size();
+        return new CursorPage<>(page, size, hasNext, hasNext ? Cursor.encodeAll(positions) : null);
     }
 
+    // 아직 DB 에 쓰지 않은 제목 변경을 요약에도 반영한다.
+    private MemoSummaryDTO overlaySummary(MemoSummaryDTO summary) {
+        memoWriteBuffer.get(summary.getId()).ifPresent(memo -> summary.setName(memo.getName()));
+        return summary;
+    }
+
+    // id 로 조회하는 메서드는 id 가 있는 shard 에서만 읽는다.
     public Memo getMemo(Long id) {
-        return memoRepository.findById(id).orElseThrow(() ->
+        Optional<Memo> buffered = memoWriteBuffer.get(id);
+        if (buffered.isPresent())
+            return buffered.get();
+        return shardRouter.read(id, () -> memoRepository.findById(id)).orElseThrow(() ->
                 new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다."));
     }
 
+    // ETag 용 version. 메모 본문은 읽지 않는다.
+    public Long getMemoVersion(Long id) {
+        Optional<Memo> buffered = memoWriteBuffer.get(id);
+        if (buffered.isPresent())
+            return buffered.get().getVersion();
+        return shardRouter.read(id, () -> memoRepository.findVersionById(id)).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다."));
+    }
+
+    // 메모 목록 ETag 용 값. 테이블을 집계하지 않고 메모/카테고리를 쓰면 남는 변경 기록의 seq 로 만든다. (모든 서버가 같은 값)
+    // 버퍼에만 들어간 수정은 아직 기록이 없고 이 서버에만 보이므로, 버퍼가 비어 있지 않으면 버퍼의 수정 횟수를 붙인다.
+    public String getListVersion() {
+        String listVersion = changeLogService.getListVersion();
+        return memoWriteBuffer.hasPending() ? listVersion + ".w" + memoWriteBuffer.modifications() : listVersion;
+    }
+
+    // 버퍼에 남은 수정을 DB 에 쓴다. DB 를 직접 읽는 export 전에 호출한다.
+    public void flushPendingWrites() {
+        memoWriteBuffer.flush();
+    }
+
     public void deleteMemo(Long id) {
-        memoRepository.deleteById(id);
+        if (deleteMemos(List.of(id)) == 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다.");
+    }
+
+    // 메모를 읽지 않고 `delete ... where id in (...)` 로 지운다. 없는 id 는 무시하고 삭제된 개수를 리턴한다.
+    // 카테고리별 메모 개수는 삭제 전에 집계 쿼리로 구해서 뺀다.
+    // id 를 shard 별로 나눠서 shard 마다 한 트랜잭션으로 지운다.
+    public int deleteMemos(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.size() > MAX_BULK_DELETE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "한 번에 " + MAX_BULK_DELETE + "개까지 삭제할 수 있습니다.");
+
+        int deleted = 0;
+        for (Map.Entry<Integer, List<Long>> group : shardRouter.groupByShard(distinct, Long::longValue).entrySet())
+            deleted += shardRouter.writeOnShard(group.getKey(), () -> deleteMemosOnShard(group.getValue()));
+        memoNameRegistry.releaseAll(distinct);
+        distinct.forEach(id -> {
+            memoWriteBuffer.discard(id);
+            memoSearchIndex.remove(id);
+            nameSuggester.removeMemo(id);
+        });
+        responseCache.invalidate();
+        return deleted;
+    }
+
+    private int deleteMemosOnShard(List<Long> ids) {
+        int deleted = 0;
+        // IN 절의 파라미터 개수 제한 때문에 나눠서 지운다.
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = memoRepository.findIdsByIdIn(ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size())));
+            if (chunk.isEmpty())
+                continue;
+            for (Object[] row : memoRepository.countByCategoryIn(chunk))
+                categoryMemoCounter.increment((Long) row[0], -(Long) row[1]);
+            deleted += memoRepository.deleteByIdIn(chunk);
+            changeLogService.recordMemos(chunk, true);
+        }
+        return deleted;
+    }
+
+    // 카테고리에 속한 메모를 모든 shard 에서 지운다. shard 마다 delete 한 번이다.
+    public int deleteMemosByCategory(Long categoryId) {
+        int deleted = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++)
+            deleted += shardRouter.writeOnShard(shard, () -> deleteMemosByCategoryOnShard(categoryId));
+        return deleted;
+    }
+
+    // 현재 shard 에서 카테고리에 속한 메모를 delete 한 번으로 모두 지운다.
+    // shard 의 트랜잭션 안에서 호출한다. (카테고리 삭제는 CategoryService 가 shard 마다 카테고리와 같이 지운다)
+    int deleteMemosByCategoryOnShard(Long categoryId) {
+        List<Long> ids = memoRepository.findIdsByCategoryId(categoryId);
+        int deleted = memoRepository.deleteByCategoryId(categoryId);
+        categoryMemoCounter.increment(categoryId, -deleted);
+        changeLogService.recordMemos(ids, true);
+        memoNameRegistry.releaseAll(ids);
+        ids.forEach(id -> {
+            memoWriteBuffer.discard(id);
+            memoSearchIndex.remove(id);
+            nameSuggester.removeMemo(id);
+        });
+        responseCache.invalidate();
+        return deleted;
+    }
+
+    // 현재 shard 에서 카테고리에 속한 메모의 category 를 update 한 번으로 null 로 바꾼다. (카테고리 삭제 시 DETACH)
+    // shard 의 트랜잭션 안에서 호출한다.
+    int detachMemosFromCategoryOnShard(Long categoryId) {
+        List<Long> ids = memoRepository.findIdsByCategoryId(categoryId);
+        int detached = memoRepository.clearCategory(categoryId);
+        categoryMemoCounter.increment(categoryId, -detached);
+        changeLogService.recordMemos(ids, false);
+        memoWriteBuffer.categoryCleared(categoryId);
+        responseCache.invalidate();
+        return detached;
     }
 
     public Memo modifyMemo(MemoDTO memoDTO) {
+        return modifyMemo(memoDTO, null);
+    }
+
+    // expectedVersion 은 If-Match 로 받은 version 이다. 그 사이에 다른 요청이 수정했으면 412 로 거절한다.
+    public Memo modifyMemo(MemoDTO memoDTO, Long expectedVersion) {
         if (memoDTO.getName() == null || memoDTO.getName().equals(""))
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "제목이 비었습니다.");
-
-        Optional<Memo> memoOptional = memoRepository.findById(memoDTO.getId());
-        if (!memoOptional.isPresent())
+        if (memoDTO.getId() == null)
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다.");
+        if (memoWriteBuffer.isEnabled())
+            return bufferMemo(memoDTO, expectedVersion);
 
-        Memo memo = Memo.builder()
-                .id(memoDTO.getId())
-                .name(memoDTO.getName())
-                .content(memoDTO.getContent())
-                .category(memoOptional.get().getCategory())
-                .build();
+        Memo memo = saveRenamed(memoDTO.getId(), memoDTO.getName(), () -> shardRouter.write(memoDTO.getId(), () -> {
+            Optional<Memo> memoOptional = memoRepository.findById(memoDTO.getId());
+            if (!memoOptional.isPresent())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다.");
 
-        return memoRepository.save(memo);
+            Memo current = memoOptional.get();
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion()))
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "메모가 변경되었습니다.");
+            current.modify(memoDTO.getName(), memoDTO.getContent());
+            return saveMemo(current);
+        }));
+        memoSearchIndex.index(memo);
+        nameSuggester.putMemo(memo.getId(), memo.getName());
+        return memo;
+    }
+
+    // 보낸 필드만 바꾼다. content_edits 는 현재 content 에 순서대로 적용한다.
+    // @DynamicUpdate 라서 update 문에는 실제로 바뀐 컬럼만 들어간다.
+    public Memo patchMemo(Long id, MemoPatchDTO patch, Long expectedVersion) {
+        if (patch.getName() != null && patch.getName().equals(""))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "제목이 비었습니다.");
+
+        // 카테고리 변경은 버퍼로 처리하지 않는다. 버퍼에 남은 수정을 먼저 쓰고 DB 에서 바로 수정한다.
+        if (memoWriteBuffer.isEnabled() && patch.getCategory_id() == null)
+            return bufferPatch(id, patch, expectedVersion);
+        if (memoWriteBuffer.isEnabled())
+            memoWriteBuffer.flush();
+
+        Memo memo = saveRenamed(id, patch.getName(), () -> shardRouter.write(id, () -> {
+            Memo current = memoRepository.findById(id).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.BAD_REQUEST, "메모가 존재하지 않습니다."));
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion()))
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "메모가 변경되었습니다.");
+            if (patch.getName() != null && !patch.getName().equals(current.getName()) && nameExists(patch.getName()))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+
+            current.modify(patch.getName() != null ? patch.getName() : current.getName(), patchedContent(current.getContent(), patch));
+            if (patch.getCategory_id() != null) {
+                Category category = categoryCache.findById(patch.getCategory_id()).orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.BAD_REQUEST, "카테고리가 존재하지 않습니다."));
+                Long previous = current.getCategory() == null ? null : current.getCategory().getId();
+                if (!category.getId().equals(previous)) {
+                    categoryMemoCounter.increment(previous, -1);
+                    categoryMemoCounter.increment(category.getId(), 1);
+                }
+                current.changeCategory(category);
+            }
+            return saveMemo(current);
+        }));
+        memoSearchIndex.index(memo);
+        nameSuggester.putMemo(memo.getId(), memo.getName());
+        return memo;
+    }
+
+    // write-behind 모드의 PATCH. 보내지 않은 필드와 content_edits 는 읽어 온 메모(current)를 기준으로 만들기 때문에,
+    // 그 사이에 다른 수정이 버퍼에 들어갔으면 덮어쓰지 않도록 항상 current 의 version 을 기대값으로 넘긴다.
+    // If-Match 가 있으면 412 로 끝내고, 없으면 다시 읽어서 PATCH_RETRIES 번까지 다시 적용한다.
+    private Memo bufferPatch(Long id, MemoPatchDTO patch, Long expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            Memo current = getMemo(id);
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion()))
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "메모가 변경되었습니다.");
+            MemoDTO memoDTO = new MemoDTO();
+            memoDTO.setId(id);
+            memoDTO.setName(patch.getName() != null ? patch.getName() : current.getName());
+            memoDTO.setContent(patchedContent(current.getContent(), patch));
+            try {
+                return bufferMemo(memoDTO, current.getVersion());
+            } catch (ResponseStatusException e) {
+                if (expectedVersion != null || attempt == PATCH_RETRIES || e.getStatusCode() != HttpStatus.PRECONDITION_FAILED)
+                    throw e;
+            }
+        }
+    }
+
+    // 샤딩을 켜면 이름을 바꾸는 수정은 새 이름을 등록부에 먼저 잡는다. 저장하면 이전 이름을, 저장하지 못하면 새 이름을 놓는다.
+    private Memo saveRenamed(Long id, String name, Supplier<Memo> save) {
+        if (!memoNameRegistry.isEnabled() || name == null)
+            return save.get();
+        String previous = getMemo(id).getName();
+        if (name.equals(previous))
+            return save.get();
+        if (!memoNameRegistry.claim(id, name))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+        Memo memo;
+        try {
+            // 등록부가 생기기 전에 저장된 메모의 이름은 memo_name 에 없으므로 다른 shard 에 같은 이름이 있는지도 본다.
+            if (nameExistsInShards(name))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+            memo = save.get();
+        } catch (RuntimeException e) {
+            memoNameRegistry.release(id, name);
+            throw e;
+        }
+        memoNameRegistry.release(id, previous);
+        return memo;
+    }
+
+    // PATCH 의 content 또는 content_edits 를 적용한 content. 둘 다 보내면 400 이다.
+    // content_edits 의 offset / delete 는 int 라서 더하면 넘칠 수 있으므로 남은 길이와 비교한다.
+    static String patchedContent(String content, MemoPatchDTO patch) {
+        if (patch.getContent() != null && patch.getContent_edits() != null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "content 와 content_edits 는 함께 보낼 수 없습니다.");
+        if (patch.getContent() != null)
+            return patch.getContent();
+        if (patch.getContent_edits() == null)
+            return content;
+
+        // offset / delete 는 코드 포인트 단위라서 StringBuilder 의 index 로 바꿔서 적용한다.
+        StringBuilder text = new StringBuilder(content == null ? "" : content);
+        for (MemoPatchDTO.ContentEdit edit : patch.getContent_edits()) {
+            int length = text.codePointCount(0, text.length());
+            if (edit.getOffset() < 0 || edit.getDelete() < 0 || edit.getOffset() > length
+                    || edit.getDelete() > length - edit.getOffset())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "content_edits 의 범위가 잘못되었습니다.");
+            int from = text.offsetByCodePoints(0, edit.getOffset());
+            int to = text.offsetByCodePoints(from, edit.getDelete());
+            text.replace(from, to, edit.getInsert() == null ? "" : edit.getInsert());
+        }
+        return text.toString();
+    }
+
+    // write-behind 모드: DB 에 바로 쓰지 않고 버퍼에 넣는다. 색인과 Bloom filter 는 바로 갱신해서 검색/중복 확인에 반영한다.
+    // 이름을 바꾸면 버퍼에 새 이름을 먼저 잡아두고 DB 를 확인한다. 버퍼에 있는 두 메모가 같은 이름으로 바뀌는 것을 막는다.
+    private Memo bufferMemo(MemoDTO memoDTO, Long expectedVersion) {
+        Memo current = getMemo(memoDTO.getId());
+        boolean renamed = !memoDTO.getName().equals(current.getName());
+        if (renamed && !memoWriteBuffer.reserveName(memoDTO.getId(), memoDTO.getName()))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+
+        Memo memo = null;
+        try {
+            if (renamed && (!memoNameRegistry.claim(memoDTO.getId(), memoDTO.getName()) || nameExistsInShards(memoDTO.getName())))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+            memo = memoWriteBuffer.modify(memoDTO.getId(), memoDTO.getName(), memoDTO.getContent(), expectedVersion,
+                    () -> getMemo(memoDTO.getId()));
+        } finally {
+            // 버퍼에 들어갔으면 그 수정이 이름을 쓰고 있으므로 놓이지 않는다.
+            // 등록부에서는 버퍼에 들어갔으면 이전 이름을, 아니면 잡은 새 이름을 놓는다.
+            if (renamed) {
+                memoWriteBuffer.releaseName(memoDTO.getId(), memoDTO.getName());
+                memoNameRegistry.release(memoDTO.getId(), memo == null ? memoDTO.getName() : current.getName());
+            }
+        }
+        if (memo == null)
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "메모가 변경되었습니다.");
+        nameFilter.addMemo(memo.getName());
+        memoSearchIndex.index(memo);
+        nameSuggester.putMemo(memo.getId(), memo.getName());
+        return memo;
+    }
+
+    // 위의 확인과 저장 사이에 다른 요청이 같은 이름을 저장하면 name 의 unique 제약에 걸리는데,
+    // 이 경우도 중복 확인에 걸린 것과 똑같이 400 으로 응답한다.
+    // 같은 메모를 동시에 수정해서 version 이 맞지 않으면 If-Match 가 틀린 것과 같이 412 로 응답한다.
+    private Memo saveMemo(Memo memo) {
+        try {
+            memo = memoRepository.saveAndFlush(memo);
+        } catch (DataIntegrityViolationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "중복된 메모입니다.");
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "메모가 변경되었습니다.");
+        }
+        nameFilter.addMemo(memo.getName());
+        responseCache.invalidate();
+        changeLogService.recordMemos(List.of(memo.getId()), false);
+        return memo;
     }
 }
@@ -0,0 +1,264 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.ResponseCache;
+import com.example.demo.entity.CompressedTextConverter;
+import com.example.demo.entity.Memo;
+import com.example.demo.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// 메모 수정 write-behind 버퍼 (app.memo.write-behind.enabled=true 일 때만 사용).
+// 에디터 자동 저장처럼 같은 메모가 짧은 시간에 여러 번 수정되면 마지막 내용만 메모리에 들고 있다가
+// flush-interval-ms 마다 (또는 max-pending 개가 쌓이면) JDBC batch update 한 번으로 DB 에 쓴다.
+// 쓰기 전인 메모는 조회할 때 버퍼의 내용을 돌려준다(read-your-writes). 서버가 내려갈 때 남은 내용을 모두 쓴다.
+//
+// version 은 수정할 때마다 1씩 올려서 ETag / If-Match 가 버퍼 상태 기준으로 동작하고,
+// DB 에 쓸 때는 `where version = 버퍼에 넣기 전 version` 조건으로 그 사이 다른 경로의 수정을 덮어쓰지 않는다.
+// DB 가 잠깐 응답하지 않아 쓰지 못한 수정은 버리지 않고 남겨서 다음 flush 에 다시 쓴다.
+@Slf4j
+@Component
+public class MemoWriteBuffer {
+    private static final String UPDATE_SQL = "update memo set name = ?, content = ?, version = ? where id = ? and version = ?";
+    // 한 건씩 쓸 때의 결과. 제약에 걸린 수정은 REJECTED, 실행되지 못한 수정은 RETRY 로 돌려준다.
+    // (batch update 의 SUCCESS_NO_INFO(-2) 와 겹치지 않는 값)
+    private static final int REJECTED = Integer.MIN_VALUE;
+    private static final int RETRY = Integer.MIN_VALUE + 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompressedTextConverter compressedTextConverter;
+    private final ResponseCache responseCache;
+    private final ChangeLogService changeLogService;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int maxPending;
+
+    // memoId -> 아직 DB 에 쓰지 않은 수정
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // 이름 -> 그 이름을 쓰는 memoId. 버퍼에만 있는 이름 변경은 DB 의 unique 제약이 막지 못하므로 여기서 먼저 잡아둔다.
+    private final Map<String, Long> names = new ConcurrentHashMap<>();
+    // 버퍼에 수정이 들어올 때마다 올라간다. 목록 ETag 에 포함해서 버퍼 내용이 바뀌면 ETag 도 바뀌게 한다.
+    private final AtomicLong modifications = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // memo: 응답으로 줄 최신 내용, baseVersion: DB 에 있는 version
+    private record Pending(Memo memo, long baseVersion) {
+    }
+
+    public MemoWriteBuffer(JdbcTemplate jdbcTemplate, CompressedTextConverter compressedTextConverter,
+                           ResponseCache responseCache, ChangeLogService changeLogService, ShardRouter shardRouter,
+                           @Value("${app.memo.write-behind.enabled:false}") boolean enabled,
+                           @Value("${app.memo.write-behind.max-pending:500}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compressedTextConverter = compressedTextConverter;
+        this.responseCache = responseCache;
+        this.changeLogService = changeLogService;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<Memo> get(Long id) {
+        Pending current = pending.get(id);
+        return current == null ? Optional.empty() : Optional.of(current.memo());
+    }
+
+    // 목록 조회 결과 중 버퍼에 더 새로운 내용이 있는 메모는 버퍼의 내용으로 바꾼다.
+    public Memo overlay(Memo memo) {
+        Pending current = pending.isEmpty() ? null : pending.get(memo.getId());
+        return current == null ? memo : current.memo();
+    }
+
+    public long modifications() {
+        return modifications.get();
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    // 이름을 memoId 가 쓰도록 잡아둔다. 다른 메모가 이미 잡아둔 이름이면 false 를 돌려준다.
+    // 버퍼를 쓰지 않으면 항상 true 다. (DB 의 unique 제약이 막아준다)
+    public boolean reserveName(Long id, String name) {
+        if (!enabled || name == null)
+            return true;
+        Long owner = names.putIfAbsent(name, id);
+        return owner == null || owner.equals(id);
+    }
+
+    // 잡아둔 이름을 놓는다. 버퍼에 남은 이 메모의 수정이 아직 그 이름을 쓰고 있으면 놓지 않는다.
+    public void releaseName(Long id, String name) {
+        if (name == null)
+            return;
+        Pending current = pending.get(id);
+        if (current != null && name.equals(current.memo().getName()))
+            return;
+        names.remove(name, id);
+    }
+
+    // 다른 메모가 버퍼에서 이 이름을 쓰고 있는지 확인한다.
+    public boolean hasName(String name) {
+        return name != null && !names.isEmpty() && names.containsKey(name);
+    }
+
+    // 버퍼에 수정을 넣고 수정된 메모를 돌려준다. loader 는 버퍼에 없을 때 DB 에서 메모를 읽는다.
+    // expectedVersion 이 현재 version 과 다르면 null 을 돌려주고, 호출한 쪽에서 412 로 응답한다.
+    // 이름을 바꾸는 경우 호출하는 쪽에서 먼저 reserveName 으로 새 이름을 잡아둔다.
+    public Memo modify(Long id, String name, String content, Long expectedVersion, Supplier<Memo> loader) {
+        // DB 조회는 compute 밖에서 한다. compute 안(synchronized)에서 기다리면 같은 bin 의 다른 수정이 기다리고,
+        // 가상 스레드는 carrier 스레드에 고정된다. 읽은 사이에 버퍼에서 빠졌으면(flush) 다시 읽는다.
+        boolean[] conflict = new boolean[1];
+        String[] previousName = new String[1];
+        Pending updated = null;
+        while (updated == null) {
+            Memo loaded = pending.containsKey(id) ? null : loader.get();
+            updated = pending.compute(id, (key, current) -> {
+                Memo base = current != null ? current.memo() : loaded;
+                if (base == null)
+                    return null;
+                if (expectedVersion != null && !expectedVersion.equals(base.getVersion())) {
+                    conflict[0] = true;
+                    return current;
+                }
+                long baseVersion = current != null ? current.baseVersion() : base.getVersion();
+                previousName[0] = base.getName();
+                return new Pending(Memo.pending(base, base.getCategory(), name, content, base.getVersion() + 1), baseVersion);
+            });
+            if (conflict[0])
+                return null;
+        }
+        if (previousName[0] != null && !previousName[0].equals(name))
+            releaseName(id, previousName[0]);
+        changed();
+        if (pending.size() >= maxPending)
+            flush();
+        return updated.memo();
+    }
+
+    // 메모가 삭제될 때 버퍼에 남은 수정을 버린다.
+    public void discard(Long id) {
+        Pending removed = pending.remove(id);
+        if (removed != null) {
+            releaseName(id, removed.memo().getName());
+            changed();
+        }
+    }
+
+    // 카테고리가 삭제되면서 DB 의 메모가 category = null, version + 1 로 바뀌었을 때 버퍼에 남은 수정도 똑같이 맞춘다.
+    public void categoryCleared(Long categoryId) {
+        pending.replaceAll((id, entry) -> {
+            Memo memo = entry.memo();
+            if (memo.getCategory() == null || !categoryId.equals(memo.getCategory().getId()))
+                return entry;
+            return new Pending(Memo.pending(memo, null, memo.getName(), memo.getContent(), memo.getVersion() + 1),
+                    entry.baseVersion() + 1);
+        });
+        changed();
+    }
+
+    // 버퍼 내용이 바뀌면 목록 ETag 와 캐시된 목록 응답도 바뀌어야 한다.
+    private void changed() {
+        modifications.incrementAndGet();
+        responseCache.invalidate();
+    }
+
+    @Scheduled(fixedDelayString = "${app.memo.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty())
+            return;
+        flushLock.lock();
+        try {
+            // batch update 는 shard 마다 따로 실행한다.
+            shardRouter.groupByShard(new ArrayList<>(pending.values()), entry -> entry.memo().getId())
+                    .forEach((shard, batch) -> shardRouter.onShard(shard, () -> flushShard(batch)));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private Void flushShard(List<Pending> batch) {
+        int[] counts;
+        try {
+            int[][] result = jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, entry) -> bind(ps, entry));
+            counts = result[0];
+        } catch (DataIntegrityViolationException e) {
+            // 한 건이라도 제약에 걸리면(예: 그 사이 다른 메모가 같은 이름을 가져감) batch 전체가 실패하므로 한 건씩 다시 쓴다.
+            counts = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++)
+                counts[i] = updateOne(batch.get(i));
+        } catch (DataAccessException e) {
+            // 커넥션 대기 시간 초과, DB 장애처럼 update 가 실행되지 않은 경우. 모두 남겨두고 다음 flush 에 다시 쓴다.
+            log.warn("failed to flush {} buffered memo edits, retrying on next flush: {}", batch.size(), e.getMessage());
+            return null;
+        }
+        List<Long> written = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending flushed = batch.get(i);
+            if (counts[i] == RETRY)
+                continue;
+            if (counts[i] == 0 || counts[i] == REJECTED) {
+                // update 가 실행되었는데 버퍼 밖에서 수정/삭제되어 맞는 행이 없거나 제약에 걸린 메모.
+                // 이후 수정도 같은 이유로 실패하므로 버린다.
+                log.warn("memo {} was not updated (changed, deleted or renamed outside the write buffer), dropping buffered edit", flushed.memo().getId());
+                discard(flushed.memo().getId());
+                continue;
+            }
+            written.add(flushed.memo().getId());
+            // flush 하는 동안 새 수정이 들어왔으면 지우지 않고, DB 에 쓴 version 을 기준으로 바꾼다.
+            Pending remaining = pending.computeIfPresent(flushed.memo().getId(), (id, current) -> current == flushed
+                    ? null
+                    : new Pending(current.memo(), flushed.memo().getVersion()));
+            // DB 에 쓴 이름은 unique 제약이 지켜주므로 놓는다.
+            if (remaining == null)
+                releaseName(flushed.memo().getId(), flushed.memo().getName());
+        }
+        // 변경 기록은 DB 에 쓴 뒤에 남긴다. 버퍼에만 있는 수정은 GET /changes 로 나가지 않는다.
+        changeLogService.recordMemos(written, false);
+        return null;
+    }
+
+    private int updateOne(Pending entry) {
+        try {
+            return jdbcTemplate.update(UPDATE_SQL, ps -> bind(ps, entry));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("failed to write buffered edit of memo {}: {}", entry.memo().getId(), e.getMessage());
+            return REJECTED;
+        } catch (DataAccessException e) {
+            log.warn("failed to write buffered edit of memo {}, retrying on next flush: {}", entry.memo().getId(), e.getMessage());
+            return RETRY;
+        }
+    }
+
+    private void bind(PreparedStatement ps, Pending entry) throws SQLException {
+        ps.setString(1, entry.memo().getName());
+        ps.setString(2, compressedTextConverter.convertToDatabaseColumn(entry.memo().getContent()));
+        ps.setLong(3, entry.memo().getVersion());
+        ps.setLong(4, entry.memo().getId());
+        ps.setLong(5, entry.baseVersion());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// DB 의 IDENTITY 없이 서버에서 만드는 id. (메모 id, 변경 기록 seq)
+// shard 마다 IDENTITY 를 쓰면 shard 끼리 id 가 겹치기 때문에 시간 + 서버 번호 + 순번으로 만든다.
+//   [밀리초 41 bit (2023-01-01 부터)] [worker 6 bit] [같은 밀리초 안의 순번 6 bit]
+// 합쳐서 53 bit 라서 JSON 으로 내보내도 JavaScript 의 number 로 정확하게 읽힌다.
+// 한 서버에서 밀리초당 64 개까지 만들고, 시간 순서로 커지므로 기존 IDENTITY 로 만든 id 보다 항상 크다.
+//
+// worker 번호는 서버끼리 겹치면 같은 id 가 만들어지므로, 시작할 때 shard 0 의 id_worker_lease 에서 비어 있는 번호를
+// 빌려온다. (최대 64 대) 빌린 번호는 lease-renew-ms 마다 연장하고, 다른 서버에 넘어갔으면 새 번호를 빌린다.
+// 빌릴 번호가 없으면 서버가 시작하지 않는다. app.id.worker-id 를 주면 빌리지 않고 그 번호를 쓴다. (서버마다 직접 나눠줄 때)
+@Slf4j
+@Component
+// ddl-auto / Flyway 가 id_worker_lease 를 만든 뒤에 번호를 빌린다.
+@DependsOn("entityManagerFactory")
+public class IdGenerator {
+    private static final long EPOCH = 1672531200000L;
+    private static final int WORKER_BITS = 6;
+    private static final int SEQUENCE_BITS = 6;
+    static final int MAX_WORKER = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final boolean leased;
+    private final Duration leaseTtl;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    private volatile long worker;
+    // 빌린 번호를 쓸 수 있는 마지막 시각. DB 장애로 연장하지 못한 채 지나면 다른 서버가 가져갈 수 있으므로 id 를 만들지 않는다.
+    private volatile long leaseValidUntil = Long.MAX_VALUE;
+    // (마지막으로 쓴 밀리초 - EPOCH) << SEQUENCE_BITS | 순번. 아직 만들지 않았으면 -1.
+    // lock 없이 CAS 로 바꾼다. synchronized 안에서 기다리면 virtual thread 가 carrier 스레드를 잡고 있게 된다.
+    private final AtomicLong state = new AtomicLong(-1);
+
+    public IdGenerator(JdbcTemplate jdbcTemplate, ShardRouter shardRouter,
+                       @Value("${app.id.worker-id:-1}") long worker,
+                       @Value("${app.id.lease-ttl-ms:60000}") long leaseTtlMs) {
+        if (worker < -1 || worker > MAX_WORKER)
+            throw new IllegalArgumentException("app.id.worker-id must be between 0 and " + MAX_WORKER);
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.leased = worker < 0;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        Instant now = Instant.now();
+        this.worker = leased ? lease(now) : worker;
+        if (leased)
+            this.leaseValidUntil = now.plus(leaseTtl).toEpochMilli();
+        log.info("id generator uses worker {}{}", this.worker, leased ? " (leased)" : "");
+    }
+
+    // 시계가 뒤로 가면 마지막으로 쓴 시각을 계속 쓰고, 그 밀리초의 순번을 다 쓰면 다음 밀리초까지 기다렸다가 다시 시도한다.
+    public long nextId() {
+        while (true) {
+            if (System.currentTimeMillis() >= leaseValidUntil)
+                throw new IllegalStateException("id worker lease expired (renewal failed)");
+            long last = state.get();
+            long lastMillis = last < 0 ? -1 : (last >>> SEQUENCE_BITS) + EPOCH;
+            long millis = Math.max(System.currentTimeMillis(), lastMillis);
+            long next;
+            if (millis == lastMillis) {
+                if ((last & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    waitNextMillis(lastMillis);
+                    continue;
+                }
+                next = last + 1;
+            } else {
+                next = (millis - EPOCH) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(last, next))
+                return ((next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS)) | (worker << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+        }
+    }
+
+    // 지금부터 (이 서버에서) 만들어질 id 는 모두 이 값 이상이다. (ChangeLogWatermark)
+    public long lowestNextId() {
+        return (System.currentTimeMillis() - EPOCH) << (WORKER_BITS + SEQUENCE_BITS);
+    }
+
+    // lock 을 잡지 않고 기다린다. virtual thread 면 yield 로 carrier 스레드를 다른 virtual thread 에 넘긴다.
+    private static void waitNextMillis(long last) {
+        while (System.currentTimeMillis() <= last)
+            Thread.yield();
+    }
+
+    // 한 번도 쓰지 않은 번호는 insert 로, 만료된 번호는 만료된 경우에만 update 로 가져온다.
+    // 다른 서버와 동시에 같은 번호를 가져가려 하면 insert 의 primary key 나 update 의 조건 때문에 한 쪽만 성공한다.
+    private long lease(Instant now) {
+        Timestamp expiresAt = Timestamp.from(now.plus(leaseTtl));
+        Map<Integer, Instant> leases = new HashMap<>();
+        shardRouter.readOnShard(0, () -> jdbcTemplate.query("select worker_id, expires_at from id_worker_lease",
+                rs -> { leases.put(rs.getInt(1), rs.getTimestamp(2).toInstant()); }));
+        for (int candidate = 0; candidate <= MAX_WORKER; candidate++) {
+            int id = candidate;
+            Instant current = leases.get(id);
+            if (current != null && current.isAfter(now))
+                continue;
+            try {
+                int claimed = shardRouter.writeOnShard(0, () -> current == null
+                        ? jdbcTemplate.update("insert into id_worker_lease (worker_id, owner, expires_at) values (?, ?, ?)", id, owner, expiresAt)
+                        : jdbcTemplate.update("update id_worker_lease set owner = ?, expires_at = ? where worker_id = ? and expires_at < ?",
+                                owner, expiresAt, id, Timestamp.from(now)));
+                if (claimed == 1)
+                    return id;
+            } catch (DataIntegrityViolationException e) {
+                // 다른 서버가 먼저 가져갔다.
+            }
+        }
+        throw new IllegalStateException("no free id worker (all " + (MAX_WORKER + 1) + " are leased by other servers)");
+    }
+
+    @Scheduled(fixedDelayString = "${app.id.lease-renew-ms:10000}")
+    public void renew() {
+        if (!leased)
+            return;
+        long current = worker;
+        Instant validUntil = Instant.now().plus(leaseTtl);
+        Timestamp expiresAt = Timestamp.from(validUntil);
+        int renewed = shardRouter.writeOnShard(0, () -> jdbcTemplate.update(
+                "update id_worker_lease set expires_at = ? where worker_id = ? and owner = ?", expiresAt, current, owner));
+        if (renewed == 1) {
+            leaseValidUntil = validUntil.toEpochMilli();
+            return;
+        }
+        // 연장하지 못한 사이 만료되어 다른 서버가 가져갔다. 같은 번호를 계속 쓰면 id 가 겹치므로 새 번호를 빌린다.
+        Instant now = Instant.now();
+        long next = lease(now);
+        worker = next;
+        leaseValidUntil = now.plus(leaseTtl).toEpochMilli();
+        log.warn("id worker {} was taken over by another server, switched to worker {}", current, next);
+    }
+
+    @PreDestroy
+    public void release() {
+        if (!leased)
+            return;
+        try {
+            shardRouter.writeOnShard(0, () -> jdbcTemplate.update("delete from id_worker_lease where worker_id = ? and owner = ?", worker, owner));
+        } catch (RuntimeException e) {
+            log.warn("failed to release id worker {}: {}", worker, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// shard 0 은 spring.datasource 이고, 여기에 적은 DB 가 차례대로 shard 1, 2, ... 가 된다.
+// app.sharding.shards[0].url=jdbc:postgresql://shard1:5432/postgres
+// app.sharding.shards[0].username=postgres
+// app.sharding.shards[0].password=postgres
+@Data
+@ConfigurationProperties("app.sharding")
+public class ShardProperties {
+    List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        String url;
+        String username;
+        String password;
+    }
+}
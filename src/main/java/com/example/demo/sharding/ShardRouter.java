@@ -0,0 +1,258 @@
+package com.example.demo.sharding;
+
+import com.example.demo.metrics.QueryCounter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// 메모를 어느 shard 에 두는지 정하고, 그 shard 에서 트랜잭션을 열어 작업을 실행한다.
+// 메모는 id 의 hash 로 shard 가 정해지고, 카테고리는 모든 shard 에 복제되어 있다. (원본은 shard 0)
+//
+// shard 를 정한 뒤에 트랜잭션을 시작해야 그 shard 의 커넥션을 쓴다. 이미 다른 shard 의 트랜잭션 안이면
+// 새 트랜잭션(REQUIRES_NEW)으로 실행하므로 shard 두 곳에 걸친 쓰기는 원자적이지 않다.
+// 샤딩을 켜지 않으면(shard 1 개) 모든 메서드가 지금까지처럼 현재 스레드의 트랜잭션에서 바로 실행된다.
+// executor 에서 실행하는 shard 조회의 SQL 도 요청의 QueryCounter 에 더한다.
+@Component
+public class ShardRouter {
+    private final int shardCount;
+    private final ExecutorService executor;
+    private final TransactionTemplate read;
+    private final TransactionTemplate write;
+    private final TransactionTemplate newRead;
+    private final TransactionTemplate newWrite;
+    private final TransactionTemplate notSupported;
+
+    public ShardRouter(ObjectProvider<ShardRoutingDataSource> routingDataSource,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.sharding.scatter-threads:8}") int scatterThreads,
+                       @Value("${app.virtual-threads.enabled:false}") boolean virtualThreads) {
+        ShardRoutingDataSource routing = routingDataSource.getIfAvailable();
+        this.shardCount = routing == null ? 1 : routing.getShardCount();
+        if (shardCount > 1 && virtualThreads) {
+            // 동시에 도는 shard 조회 수는 shard 마다의 커넥션 풀 크기가 정한다.
+            this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        } else if (shardCount > 1) {
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(scatterThreads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+
+        this.read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+        this.write = new TransactionTemplate(transactionManager);
+        this.newRead = new TransactionTemplate(transactionManager);
+        newRead.setReadOnly(true);
+        newRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newWrite = new TransactionTemplate(transactionManager);
+        newWrite.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.notSupported = new TransactionTemplate(transactionManager);
+        notSupported.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    // id 를 그대로 나누면 시간 순서로 만들어진 id 의 아래 비트(순번)가 고르지 않아서 섞은 뒤에 나눈다.
+    public int shardOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    public <T> T read(long id, Supplier<T> work) {
+        return readOnShard(shardOf(id), work);
+    }
+
+    public <T> T write(long id, Supplier<T> work) {
+        return writeOnShard(shardOf(id), work);
+    }
+
+    public <T> T readOnShard(int shard, Supplier<T> work) {
+        return execute(shard, read, newRead, work);
+    }
+
+    public <T> T writeOnShard(int shard, Supplier<T> work) {
+        return execute(shard, write, newWrite, work);
+    }
+
+    // 트랜잭션 없이 shard 에서 실행한다. (JdbcTemplate 으로 한 문장씩 실행하는 작업)
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (shardCount == 1)
+            return work.get();
+        Integer previous = ShardRoutingDataSource.current();
+        ShardRoutingDataSource.use(shard);
+        try {
+            if (TransactionSynchronizationManager.isActualTransactionActive())
+                return notSupported.execute(status -> work.get());
+            return work.get();
+        } finally {
+            ShardRoutingDataSource.use(previous);
+        }
+    }
+
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            onShard(current, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    // 모든 shard 에서 readOnly 트랜잭션으로 동시에 실행하고 결과를 shard 순서대로 돌려준다.
+    public <T> List<T> scatter(Supplier<T> work) {
+        return scatterByShard(shard -> work.get());
+    }
+
+    // scatter 와 같고, shard 마다 조건이 다를 때(shard 별 커서) shard 번호를 넘겨준다.
+    public <T> List<T> scatterByShard(IntFunction<T> work) {
+        if (shardCount == 1)
+            return Collections.singletonList(read.execute(status -> work.apply(0)));
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(QueryCounter.propagate(() -> {
+                ShardRoutingDataSource.use(current);
+                try {
+                    return read.execute(status -> work.apply(current));
+                } finally {
+                    ShardRoutingDataSource.use(null);
+                }
+            }), executor));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures)
+            results.add(join(future));
+        return results;
+    }
+
+    // id 를 shard 별로 나눈다. 순서는 shard 번호 순서이고 각 묶음 안에서는 넘어온 순서를 유지한다.
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, ToLongFunction<T> idOf) {
+        Map<Integer, List<T>> groups = new TreeMap<>();
+        for (T item : items)
+            groups.computeIfAbsent(shardOf(idOf.applyAsLong(item)), shard -> new ArrayList<>()).add(item);
+        return groups;
+    }
+
+    // id 목록으로 조회한다. id 가 있는 shard 에만 조회를 보낸다.
+    public <T> List<T> gather(Collection<Long> ids, Function<List<Long>, List<T>> query) {
+        if (shardCount == 1)
+            return read.execute(status -> query.apply(List.copyOf(ids)));
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        groupByShard(ids, Long::longValue).forEach((shard, group) ->
+                futures.add(CompletableFuture.supplyAsync(QueryCounter.propagate(() -> {
+                    ShardRoutingDataSource.use(shard);
+                    try {
+                        return read.execute(status -> query.apply(group));
+                    } finally {
+                        ShardRoutingDataSource.use(null);
+                    }
+                }), executor)));
+        List<T> results = new ArrayList<>();
+        for (CompletableFuture<List<T>> future : futures)
+            results.addAll(join(future));
+        return results;
+    }
+
+    // OFFSET 페이지 조회. 각 shard 에서 (offset + size) 개를 같은 정렬로 읽어 합친 뒤 정렬해서 요청한 페이지만 자른다.
+    // total 은 shard 별 total 의 합이다. 깊은 페이지일수록 shard 마다 읽는 행이 늘어나므로 커서 페이징을 권장한다.
+    public <T> Page<T> page(Pageable pageable, Function<Pageable, Page<T>> query) {
+        if (shardCount == 1)
+            return read.execute(status -> query.apply(pageable));
+        int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+        Pageable first = PageRequest.of(0, Math.max(1, limit), pageable.getSort());
+        List<Page<T>> pages = scatter(() -> query.apply(first));
+
+        List<T> merged = new ArrayList<>();
+        long total = 0;
+        for (Page<T> page : pages) {
+            merged.addAll(page.getContent());
+            total += page.getTotalElements();
+        }
+        merged.sort(comparator(pageable.getSort()));
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        int to = Math.min(from + pageable.getPageSize(), merged.size());
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, to)), pageable, total);
+    }
+
+    // Sort 와 같은 순서의 Comparator. 값이 같으면 id 순서로 정해서 페이지 경계가 흔들리지 않게 한다.
+    // (shard 안에서 같은 값끼리의 순서는 DB 마음대로라서 완전히 같지는 않다)
+    public static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort)
+            comparator = comparator.thenComparing(new PropertyComparator<>(order.getProperty(), order.isIgnoreCase(), order.isAscending()));
+        if (sort.getOrderFor("id") == null)
+            comparator = comparator.thenComparing(new PropertyComparator<>("id", false, true));
+        return comparator;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    // 현재 스레드가 target shard 의 트랜잭션 안에 있으면 거기에 참여하고, 다른 shard 의 트랜잭션 안이면 새로 연다.
+    private <T> T execute(int shard, TransactionTemplate required, TransactionTemplate requiresNew, Supplier<T> work) {
+        if (shardCount == 1)
+            return required.execute(status -> work.get());
+        Integer previous = ShardRoutingDataSource.current();
+        boolean otherShard = TransactionSynchronizationManager.isActualTransactionActive()
+                && !Objects.equals(previous == null ? 0 : previous, shard);
+        ShardRoutingDataSource.use(shard);
+        try {
+            return (otherShard ? requiresNew : required).execute(status -> work.get());
+        } finally {
+            ShardRoutingDataSource.use(previous);
+        }
+    }
+}
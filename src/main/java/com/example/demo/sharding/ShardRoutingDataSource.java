@@ -0,0 +1,48 @@
+package com.example.demo.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 현재 스레드에 정해진 shard 의 DataSource 에서 커넥션을 가져온다. 정해진 shard 가 없으면 shard 0 이다.
+// shard 는 ShardRouter 가 정하고, 트랜잭션이 시작된 뒤 첫 SQL 에서 커넥션을 고르도록
+// LazyConnectionDataSourceProxy 로 감싸서 쓴다. (ShardingConfig)
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int shardCount;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shardCount = shards.size();
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++)
+            targets.put(shard, shards.get(shard));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    static Integer current() {
+        return CURRENT.get();
+    }
+
+    static void use(Integer shard) {
+        if (shard == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(shard);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+}
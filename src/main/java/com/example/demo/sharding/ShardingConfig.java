@@ -0,0 +1,63 @@
+package com.example.demo.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// app.sharding.enabled=true 이면 spring.datasource 를 shard 0, app.sharding.shards 를 shard 1.. 로 쓰는 DataSource 를 만든다.
+// shard 0 의 스키마는 지금처럼 ddl-auto 또는 Flyway(fast 프로파일)가 만들고,
+// 나머지 shard 는 여기서 db/migration 으로 만든다. (같은 스키마를 유지하려면 엔티티를 바꿀 때 migration 도 추가한다)
+// replica 라우팅(app.datasource.routing.enabled)과는 같이 쓸 수 없다.
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardingConfig {
+    private final ShardProperties shardProperties;
+
+    public ShardingConfig(ShardProperties shardProperties,
+                          @Value("${app.datasource.routing.enabled:false}") boolean replicaRouting) {
+        if (replicaRouting)
+            throw new IllegalStateException("app.sharding.enabled and app.datasource.routing.enabled cannot be used together");
+        this.shardProperties = shardProperties;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties primaryProperties) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build());
+        for (ShardProperties.Shard shard : shardProperties.getShards()) {
+            DataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .baselineOnMigrate(true)
+                    .load()
+                    .migrate();
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // JPA / JdbcTemplate 이 쓰는 DataSource. 실제 커넥션은 첫 SQL 을 실행할 때 현재 shard 를 보고 고른다.
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
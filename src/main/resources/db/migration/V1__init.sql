@@ -0,0 +1,24 @@
+-- 엔티티(Category, Memo, CategoryMemoCount)와 같은 스키마. PostgreSQL 과 H2 에서 모두 실행된다.
+-- ddl-auto=update 로 이미 테이블이 만들어진 DB 는 baseline-on-migrate 로 이 버전을 건너뛴다.
+create table category (
+    id      bigint generated by default as identity primary key,
+    name    varchar(100) unique,
+    version bigint default 0 not null
+);
+
+create table memo (
+    id          bigint generated by default as identity primary key,
+    category_id bigint references category (id),
+    name        varchar(100) unique,
+    content     text,
+    version     bigint default 0 not null
+);
+
+create index idx_memo_name_id on memo (name, id);
+
+create table category_memo_count (
+    category_id bigint  not null,
+    stripe      integer not null,
+    memo_count  bigint default 0 not null,
+    primary key (category_id, stripe)
+);
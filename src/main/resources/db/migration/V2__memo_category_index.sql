@@ -0,0 +1,2 @@
+-- 카테고리별 메모 삭제 / 카테고리 비우기(bulk delete, update)와 외래키 확인에 쓰는 인덱스
+create index if not exists idx_memo_category_id on memo (category_id);
@@ -0,0 +1,16 @@
+-- 메모 / 카테고리 변경 기록(GET /changes)과 정리된 tombstone 의 seq
+create table if not exists change_log (
+    seq         bigint generated by default as identity primary key,
+    entity_type varchar(20)              not null,
+    entity_id   bigint                   not null,
+    deleted     boolean                  not null,
+    changed_at  timestamp with time zone not null
+);
+
+create index if not exists idx_change_log_entity on change_log (entity_type, entity_id, seq);
+create index if not exists idx_change_log_changed_at on change_log (changed_at);
+
+create table if not exists change_log_floor (
+    id             integer primary key,
+    purged_through bigint not null
+);
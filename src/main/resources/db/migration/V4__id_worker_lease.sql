@@ -0,0 +1,6 @@
+-- 서버마다 빌려 쓰는 IdGenerator worker 번호 (IdWorkerLease)
+create table if not exists id_worker_lease (
+    worker_id  integer primary key,
+    owner      varchar(100)             not null,
+    expires_at timestamp with time zone not null
+);
@@ -0,0 +1,6 @@
+-- 서버별로 커밋이 끝난 변경 기록의 seq (ChangeLogWriter)
+create table if not exists change_log_writer (
+    owner      varchar(100)             primary key,
+    safe_seq   bigint                   not null,
+    expires_at timestamp with time zone not null
+);
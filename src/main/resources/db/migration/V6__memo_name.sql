@@ -0,0 +1,8 @@
+-- 샤딩을 켰을 때 모든 shard 에서 메모 이름이 겹치지 않도록 shard 0 에 두는 이름 등록부 (MemoName)
+create table if not exists memo_name (
+    name       varchar(100)             primary key,
+    memo_id    bigint                   not null,
+    claimed_at timestamp with time zone not null
+);
+
+create index if not exists idx_memo_name_memo_id on memo_name (memo_id);
@@ -0,0 +1,2 @@
+-- 이름 순서 목록(커서 페이징)용 인덱스. V1 에도 있지만 ddl-auto=update 로 만들어져 V1 을 baseline 으로 건너뛴 DB 에는 없다.
+create index if not exists idx_memo_name_id on memo (name, id);
@@ -0,0 +1,131 @@
+package com.example.demo.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// H2 두 개를 primary / replica 로 놓고 어느 쪽에서 읽는지 확인한다.
+// 각 DB 의 node 테이블에 자기 이름을 넣어 두고, 조회 결과로 라우팅된 DB 를 구분한다.
+class ReplicaRoutingDataSourceTest {
+    DataSource primary = h2("routing-primary");
+    DataSource replica = h2("routing-replica");
+
+    ReplicaRoutingDataSource routing;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readOnly;
+    TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        createNode(primary, "primary");
+        createNode(replica, "replica");
+        routing = routing(replica);
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void clearPin() {
+        ReplicaRoutingDataSource.clearPin();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertThat(readOnly.execute(status -> node())).isEqualTo("replica");
+    }
+
+    @Test
+    void writesGoToPrimary() {
+        assertThat(readWrite.execute(status -> node())).isEqualTo("primary");
+    }
+
+    @Test
+    void readsAfterWriteStayOnPrimaryUntilPinIsCleared() {
+        ReplicaRoutingDataSource.beginRequest();
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("update node set name = name"));
+        assertThat(readOnly.execute(status -> node())).isEqualTo("primary");
+
+        ReplicaRoutingDataSource.clearPin();
+        assertThat(readOnly.execute(status -> node())).isEqualTo("replica");
+    }
+
+    @Test
+    void pinOutsideRequestEndsWithTransaction() {
+        readWrite.executeWithoutResult(status -> {
+            jdbcTemplate.update("update node set name = name");
+            assertThat(readWrite.execute(inner -> node())).isEqualTo("primary");
+        });
+        assertThat(readOnly.execute(status -> node())).isEqualTo("replica");
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToNextReplica() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable", "sa", ""));
+        replicas.put("replica-1", replica);
+        routing = new ReplicaRoutingDataSource(primary, replicas, 1);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        assertThat(readOnly.execute(status -> node())).isEqualTo("replica");
+        assertThat(readOnly.execute(status -> node())).isEqualTo("replica");
+        assertThat(routing.replicaHealth()).containsEntry("replica-0", false);
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToPrimary() {
+        routing = routing(new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable", "sa", ""));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        assertThat(readOnly.execute(status -> node())).isEqualTo("primary");
+        assertThat(routing.replicaHealth()).containsEntry("replica-0", false);
+    }
+
+    @Test
+    void healthCheckMarksReachableReplicaHealthy() {
+        routing.checkReplicas();
+        assertThat(routing.replicaHealth()).containsEntry("replica-0", true);
+    }
+
+    private ReplicaRoutingDataSource routing(DataSource replicaDataSource) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replicaDataSource);
+        return new ReplicaRoutingDataSource(primary, replicas, 1);
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private static void createNode(DataSource dataSource, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(20))");
+        jdbcTemplate.update("delete from node");
+        jdbcTemplate.update("insert into node (name) values (?)", name);
+    }
+}
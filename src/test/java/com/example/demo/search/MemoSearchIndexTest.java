@@ -0,0 +1,67 @@
+package com.example.demo.search;
+
+import com.example.demo.entity.Memo;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoSearchIndexTest {
+    MemoSearchIndex index = new MemoSearchIndex(null, null);
+
+    @Test
+    void singleCharacterKeywordMatchesInsideWords() {
+        index.index(Memo.builder().id(1L).name("memo").content("hello").build());
+        index.index(Memo.builder().id(2L).name("note").content("x").build());
+
+        assertThat(index.search("m", PageRequest.of(0, 10)).ids()).containsExactly(1L);
+        assertThat(index.search("x", PageRequest.of(0, 10)).ids()).containsExactly(2L);
+        assertThat(index.search("메", PageRequest.of(0, 10)).ids()).isEmpty();
+    }
+
+    @Test
+    void removedMemoIsNotFound() {
+        index.index(Memo.builder().id(1L).name("memo").content("hello").build());
+        index.remove(1L);
+
+        assertThat(index.search("me", PageRequest.of(0, 10)).total()).isZero();
+        assertThat(index.search("m", PageRequest.of(0, 10)).total()).isZero();
+    }
+
+    @Test
+    void matchesReturnsEveryMatchingIdInIdOrder() {
+        index.index(Memo.builder().id(3L).name("memo three").content("").build());
+        index.index(Memo.builder().id(1L).name("note").content("memo in content").build());
+        index.index(Memo.builder().id(2L).name("other").content("").build());
+
+        assertThat(index.matches("memo")).containsExactly(1L, 3L);
+        assertThat(index.matches("zz")).isEmpty();
+        assertThat(index.matches("!!")).isNull();
+    }
+
+    @Test
+    void singleCharacterKeywordPagesInIdOrder() {
+        index.index(Memo.builder().id(3L).name("memo").content("").build());
+        index.index(Memo.builder().id(1L).name("mm").content("mmm").build());
+        index.index(Memo.builder().id(2L).name("note m").content("").build());
+        index.index(Memo.builder().id(4L).name("note").content("").build());
+
+        MemoSearchIndex.Hits hits = index.search("m", PageRequest.of(1, 2));
+        assertThat(hits.ids()).containsExactly(3L);
+        assertThat(hits.total()).isEqualTo(3);
+        assertThat(index.search("m n", PageRequest.of(0, 10)).ids()).containsExactly(2L);
+    }
+
+    @Test
+    void longContentIndexesOnlyLeadingGrams() {
+        // 서로 다른 한글 음절을 이어 쓰면 2-gram 이 모두 다르다.
+        StringBuilder content = new StringBuilder();
+        for (char c = '가'; content.length() <= MemoSearchIndex.MAX_CONTENT_GRAMS + 1; c++)
+            content.append(c);
+        index.index(Memo.builder().id(1L).name("memo").content(content.toString()).build());
+
+        assertThat(index.search(content.substring(0, 2), PageRequest.of(0, 10)).ids()).containsExactly(1L);
+        assertThat(index.search(content.substring(content.length() - 2), PageRequest.of(0, 10)).ids()).isEmpty();
+        assertThat(index.search("memo", PageRequest.of(0, 10)).ids()).containsExactly(1L);
+    }
+}
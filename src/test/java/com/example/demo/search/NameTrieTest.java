@@ -0,0 +1,49 @@
+package com.example.demo.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NameTrieTest {
+    NameTrie trie = new NameTrie();
+
+    @Test
+    void topReturnsPrefixMatchesByScore() {
+        trie.put(1, "Memo A", 1);
+        trie.put(2, "memo b", 3);
+        trie.put(3, "메모", 4);
+        trie.put(4, "Meeting", 2);
+
+        assertThat(ids(trie.top("me", 10))).containsExactly(2L, 4L, 1L);
+        assertThat(ids(trie.top("MEMO", 1))).containsExactly(2L);
+        assertThat(ids(trie.top("메", 10))).containsExactly(3L);
+        assertThat(trie.top("x", 10)).isEmpty();
+    }
+
+    @Test
+    void putReplacesPreviousNameOfSameId() {
+        trie.put(1, "alpha", 1);
+        trie.put(1, "beta", 2);
+
+        assertThat(trie.top("al", 10)).isEmpty();
+        assertThat(ids(trie.top("be", 10))).containsExactly(1L);
+    }
+
+    @Test
+    void removeRecomputesBestScoreOfPath() {
+        trie.put(1, "abc", 5);
+        trie.put(2, "abd", 1);
+        trie.put(3, "b", 3);
+        trie.remove(1);
+
+        // "ab" 아래 최고 점수가 5 에서 1 로 내려가서 "b" 가 먼저 나와야 한다.
+        assertThat(ids(trie.top("", 10))).containsExactly(3L, 2L);
+        assertThat(trie.contains(1)).isFalse();
+    }
+
+    private static List<Long> ids(List<NameTrie.Entry> entries) {
+        return entries.stream().map(NameTrie.Entry::id).toList();
+    }
+}
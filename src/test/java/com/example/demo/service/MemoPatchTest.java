@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.MemoPatchDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoPatchTest {
+
+    @Test
+    void editsAreAppliedInOrder() {
+        MemoPatchDTO patch = edits(edit(0, 5, "hi"), edit(2, 0, " there"), edit(8, 6, ""));
+
+        assertThat(MemoService.patchedContent("hello world", patch)).isEqualTo("hi there");
+    }
+
+    @Test
+    void editAtEndAppends() {
+        assertThat(MemoService.patchedContent("memo", edits(edit(4, 0, "!")))).isEqualTo("memo!");
+        assertThat(MemoService.patchedContent(null, edits(edit(0, 0, "new")))).isEqualTo("new");
+    }
+
+    @Test
+    void offsetsCountCodePoints() {
+        assertThat(MemoService.patchedContent("a😀b", edits(edit(1, 1, "!")))).isEqualTo("a!b");
+        assertThat(MemoService.patchedContent("😀😀", edits(edit(2, 0, "x")))).isEqualTo("😀😀x");
+        assertBadRequest("😀😀", edits(edit(3, 0, "x")));
+    }
+
+    @Test
+    void outOfRangeEditIsRejected() {
+        assertBadRequest("memo", edits(edit(5, 0, "x")));
+        assertBadRequest("memo", edits(edit(2, 3, "")));
+        assertBadRequest("memo", edits(edit(-1, 0, "x")));
+        assertBadRequest("memo", edits(edit(0, -1, "x")));
+        assertBadRequest("memo", edits(edit(1, 0, "x"), edit(6, 0, "y")));
+    }
+
+    @Test
+    void overflowingOffsetPlusDeleteIsRejected() {
+        assertBadRequest("memo", edits(edit(2, Integer.MAX_VALUE, "")));
+        assertBadRequest("memo", edits(edit(Integer.MAX_VALUE, Integer.MAX_VALUE, "")));
+    }
+
+    @Test
+    void contentWithContentEditsIsRejected() {
+        MemoPatchDTO patch = edits(edit(0, 0, "x"));
+        patch.setContent("memo");
+
+        assertBadRequest("memo", patch);
+    }
+
+    @Test
+    void missingContentKeepsCurrentContent() {
+        assertThat(MemoService.patchedContent("memo", new MemoPatchDTO())).isEqualTo("memo");
+    }
+
+    private static void assertBadRequest(String content, MemoPatchDTO patch) {
+        assertThatThrownBy(() -> MemoService.patchedContent(content, patch))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static MemoPatchDTO edits(MemoPatchDTO.ContentEdit... edits) {
+        MemoPatchDTO patch = new MemoPatchDTO();
+        patch.setContent_edits(List.of(edits));
+        return patch;
+    }
+
+    private static MemoPatchDTO.ContentEdit edit(int offset, int delete, String insert) {
+        MemoPatchDTO.ContentEdit edit = new MemoPatchDTO.ContentEdit();
+        edit.setOffset(offset);
+        edit.setDelete(delete);
+        edit.setInsert(insert);
+        return edit;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.MemoDTO;
+import com.example.demo.dto.MemoSummaryDTO;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Memo;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 목록 조회 한 번에 나가는 SQL 개수를 Hibernate 통계로 확인한다.
+// 페이지 조회는 select 1번 + count 1번 이어야 하고, 메모 개수만큼 category select 가 추가로 나가면 안 된다.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("local")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MemoServiceQueryCountTest {
+    @Autowired
+    MemoService memoService;
+    @Autowired
+    CategoryService categoryService;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeAll
+    void createMemos() {
+        for (int i = 0; i < 4; i++) {
+            CategoryDTO categoryDTO = new CategoryDTO();
+            categoryDTO.setName("query-count-category" + i);
+            Category category = categoryService.createCategory(categoryDTO);
+            for (int j = 0; j < 5; j++) {
+                MemoDTO memoDTO = new MemoDTO();
+                memoDTO.setName("query-count-memo" + i + "-" + j);
+                memoDTO.setContent("content " + i + " " + j);
+                memoDTO.setCategory_id(category.getId());
+                memoService.createMemo(memoDTO);
+            }
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @BeforeEach
+    void clearStatistics() {
+        statistics.clear();
+    }
+
+    @Test
+    void getMemosLoadsCategoriesInTheSameQuery() {
+        Page<Memo> page = memoService.getMemos(PageRequest.of(0, 10), null);
+        page.forEach(memo -> assertThat(memo.getCategory().getName()).startsWith("query-count-category"));
+
+        assertThat(page.getNumberOfElements()).isEqualTo(10);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getMemoSummariesDoesNotLoadEntities() {
+        Page<MemoSummaryDTO> page = memoService.getMemoSummaries(PageRequest.of(0, 10), null);
+
+        assertThat(page.getNumberOfElements()).isEqualTo(10);
+        assertThat(page.getContent()).allSatisfy(summary -> assertThat(summary.getCategory_name()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
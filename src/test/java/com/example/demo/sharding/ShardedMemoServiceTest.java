@@ -0,0 +1,141 @@
+package com.example.demo.sharding;
+
+import com.example.demo.dto.CategoryDTO;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.MemoDTO;
+import com.example.demo.entity.Category;
+import com.example.demo.entity.Memo;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.MemoRepository;
+import com.example.demo.service.CategoryService;
+import com.example.demo.service.MemoNameRegistry;
+import com.example.demo.service.MemoService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// H2 세 개를 shard 로 놓고 메모가 나뉘어 저장되는지, 조회가 모든 shard 를 합친 결과를 주는지 확인한다.
+@SpringBootTest(properties = {
+        "app.sharding.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[0].username=sa",
+        "app.sharding.shards[0].password=",
+        "app.sharding.shards[1].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards[1].username=sa",
+        "app.sharding.shards[1].password="
+})
+@ActiveProfiles("local")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardedMemoServiceTest {
+    static final int MEMOS = 30;
+
+    @Autowired
+    MemoService memoService;
+    @Autowired
+    CategoryService categoryService;
+    @Autowired
+    ShardRouter shardRouter;
+    @Autowired
+    MemoRepository memoRepository;
+    @Autowired
+    CategoryRepository categoryRepository;
+    @Autowired
+    MemoNameRegistry memoNameRegistry;
+
+    Category category;
+    List<Memo> memos = new ArrayList<>();
+
+    @BeforeAll
+    void createMemos() {
+        CategoryDTO categoryDTO = new CategoryDTO();
+        categoryDTO.setName("sharded-category");
+        category = categoryService.createCategory(categoryDTO);
+        for (int i = 0; i < MEMOS; i++) {
+            MemoDTO memoDTO = new MemoDTO();
+            memoDTO.setName(String.format("sharded-memo-%02d", i));
+            memoDTO.setContent("content " + i);
+            memoDTO.setCategory_id(category.getId());
+            memos.add(memoService.createMemo(memoDTO));
+        }
+    }
+
+    @Test
+    void memosAreSpreadAcrossShardsAndCategoriesAreReplicated() {
+        assertThat(shardRouter.shardCount()).isEqualTo(3);
+        long total = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            long count = shardRouter.readOnShard(shard, memoRepository::count);
+            assertThat(count).isPositive();
+            total += count;
+            assertThat(shardRouter.readOnShard(shard, () -> categoryRepository.existsById(category.getId()))).isTrue();
+        }
+        assertThat(total).isEqualTo(MEMOS);
+    }
+
+    @Test
+    void pointLookupReadsFromOwningShard() {
+        for (Memo memo : memos)
+            assertThat(memoService.getMemo(memo.getId()).getName()).isEqualTo(memo.getName());
+    }
+
+    @Test
+    void pagesAreMergedInRequestedOrder() {
+        Page<Memo> page = memoService.getMemos(PageRequest.of(1, 7, Sort.by(Sort.Direction.DESC, "name")), null);
+
+        assertThat(page.getTotalElements()).isEqualTo(MEMOS);
+        assertThat(page.getContent()).extracting(Memo::getName)
+                .containsExactly("sharded-memo-22", "sharded-memo-21", "sharded-memo-20", "sharded-memo-19",
+                        "sharded-memo-18", "sharded-memo-17", "sharded-memo-16");
+    }
+
+    @Test
+    void scrollByNameVisitsEveryMemoOnceInNameOrder() {
+        List<String> names = new ArrayList<>();
+        String after = null;
+        do {
+            CursorPage<Memo> page = memoService.scrollMemos(after, 7, "name");
+            page.getContent().forEach(memo -> names.add(memo.getName()));
+            after = page.getNext();
+        } while (after != null);
+
+        assertThat(names).hasSize(MEMOS).isSorted();
+    }
+
+    @Test
+    void duplicateNameIsRejectedAcrossShards() {
+        MemoDTO memoDTO = new MemoDTO();
+        memoDTO.setName("sharded-memo-00");
+        memoDTO.setContent("again");
+
+        assertThatThrownBy(() -> memoService.createMemo(memoDTO))
+                .hasMessageContaining("중복된 메모입니다.");
+    }
+
+    @Test
+    void namesAreRegisteredOnShardZeroUntilDeleted() {
+        MemoDTO memoDTO = new MemoDTO();
+        memoDTO.setName("registered-memo");
+        memoDTO.setContent("content");
+        Memo memo = memoService.createMemo(memoDTO);
+
+        assertThat(memoNameRegistry.claim(memo.getId() + 1, "registered-memo")).isFalse();
+        assertThat(memoNameRegistry.claim(memo.getId(), "registered-memo")).isTrue();
+
+        memoService.deleteMemo(memo.getId());
+        assertThat(memoNameRegistry.claim(memo.getId() + 1, "registered-memo")).isTrue();
+        memoNameRegistry.release(memo.getId() + 1, "registered-memo");
+    }
+}